@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.scijava.io.location.BrowsableLocation;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Lists the names in a directory with one request, so that the existence of
+ * all files of a position is known without asking the file system about each
+ * file. On NFS and SMB mounts every existence check is a network round trip,
+ * while a listing is a few. Local directories are streamed, so the listing is
+ * never held as location objects.
+ *
+ * @author Karl Duderstadt
+ */
+class DirectoryListing {
+
+	private DirectoryListing() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * @return The names of the entries of the directory, empty if it does not
+	 *         exist, or null if it cannot be listed, in which case each file has
+	 *         to be checked on its own.
+	 */
+	static Set<String> list(final Location dir) {
+		final Set<String> names = new HashSet<>();
+		try {
+			if (dir instanceof FileLocation) {
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+					((FileLocation) dir).getFile().toPath()))
+				{
+					for (final Path path : stream)
+						names.add(path.getFileName().toString());
+				}
+			}
+			else if (dir instanceof BrowsableLocation) {
+				for (final BrowsableLocation child : ((BrowsableLocation) dir)
+					.children())
+					names.add(child.getName());
+			}
+			else return null;
+		}
+		catch (final NoSuchFileException e) {
+			names.clear();
+		}
+		catch (final IOException | UnsupportedOperationException e) {
+			return null;
+		}
+		return names;
+	}
+}
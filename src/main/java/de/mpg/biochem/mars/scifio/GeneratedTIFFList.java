@@ -0,0 +1,302 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.scijava.io.location.BrowsableLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * TIFF list of a position with one file per plane, computed from the naming
+ * template Micro-Manager uses instead of holding a {@link Location} per
+ * plane. Only the prefix, padding widths and channel names are kept, and the
+ * name and location of a file are built when it is asked for, so the memory
+ * used does not depend on the number of planes. Files are listed in plane
+ * order, z fastest, then channel, then time. Lists are immutable, a live
+ * position that gained frames publishes a new one, see
+ * {@link #withFrames(int)}.
+ * <p>
+ * MM 1.4 names are prefix_time_channel_slice.tif, padded like the first file
+ * name of the dataset, with time and slice exchanged if Z and TIME were
+ * swapped. MM 2.0 names are
+ * prefix_channelCCC_positionPPP_timeTTTTTTTTT_zZZZ.tif.
+ * </p>
+ *
+ * @author Karl Duderstadt
+ */
+public class GeneratedTIFFList extends AbstractList<Location> {
+
+	private final BrowsableLocation metadataFile;
+
+	private final boolean mv2;
+
+	private final String prefix;
+
+	/** Padding of the first and last number of MM 1.4 names. */
+	private final int firstWidth, lastWidth;
+
+	/** Channel names of MM 1.4 names. */
+	private final String[] channels;
+
+	private final boolean swapZandTime;
+
+	private final int positionIndex;
+
+	private final int sizeZ, sizeC;
+
+	private final int frames;
+
+	private final Pattern pattern;
+
+	GeneratedTIFFList(final BrowsableLocation metadataFile, final boolean mv2,
+		final String prefix, final int firstWidth, final int lastWidth,
+		final String[] channels, final boolean swapZandTime,
+		final int positionIndex, final int sizeZ, final int sizeC,
+		final int frames)
+	{
+		this.metadataFile = metadataFile;
+		this.mv2 = mv2;
+		this.prefix = prefix;
+		this.firstWidth = firstWidth;
+		this.lastWidth = lastWidth;
+		this.channels = channels;
+		this.swapZandTime = swapZandTime;
+		this.positionIndex = positionIndex;
+		this.sizeZ = sizeZ;
+		this.sizeC = sizeC;
+		this.frames = frames;
+		pattern = Pattern.compile(Pattern.quote(prefix) + (mv2
+			? "_channel(\\d+)_position\\d+_time(\\d+)_z(\\d+)\\.tif"
+			: "_(\\d+)_(.*)_(\\d+)\\.tif"));
+	}
+
+	private GeneratedTIFFList(final GeneratedTIFFList template,
+		final int frames)
+	{
+		metadataFile = template.metadataFile;
+		mv2 = template.mv2;
+		prefix = template.prefix;
+		firstWidth = template.firstWidth;
+		lastWidth = template.lastWidth;
+		channels = template.channels;
+		swapZandTime = template.swapZandTime;
+		positionIndex = template.positionIndex;
+		sizeZ = template.sizeZ;
+		sizeC = template.sizeC;
+		this.frames = frames;
+		pattern = template.pattern;
+	}
+
+	/**
+	 * Creates the list of an MM 1.4 position, patterned after the name of one
+	 * of its files.
+	 */
+	static GeneratedTIFFList mv1(final BrowsableLocation metadataFile,
+		final String baseName, final String[] channels,
+		final boolean swapZandTime, final int sizeZ, final int sizeC)
+	{
+		final String[] blocks = baseName.split("_");
+		return new GeneratedTIFFList(metadataFile, false, blocks[0], blocks[1]
+			.length(), blocks[3].length() - 4, channels, swapZandTime, 0, sizeZ,
+			sizeC, 0);
+	}
+
+	/** Creates the list of an MM 2.0 position. */
+	static GeneratedTIFFList mv2(final BrowsableLocation metadataFile,
+		final String prefix, final int positionIndex, final int sizeZ,
+		final int sizeC)
+	{
+		return new GeneratedTIFFList(metadataFile, true, prefix, 0, 0, null, false,
+			positionIndex, sizeZ, sizeC, 0);
+	}
+
+	@Override
+	public Location get(final int index) {
+		try {
+			return metadataFile.sibling(getName(index));
+		}
+		catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public int size() {
+		return sizeZ * sizeC * frames;
+	}
+
+	/**
+	 * @return A list with the same naming template and the given number of
+	 *         time points. This list is left unchanged.
+	 */
+	GeneratedTIFFList withFrames(final int frames) {
+		return frames == this.frames ? this : new GeneratedTIFFList(this, frames);
+	}
+
+	/** @return The name of the file at the given index. */
+	public String getName(final int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " +
+				size());
+		}
+		final int z = index % sizeZ;
+		final int c = index / sizeZ % sizeC;
+		final int t = index / sizeZ / sizeC;
+		final StringBuilder name = new StringBuilder(prefix);
+		if (mv2) {
+			name.append("_channel");
+			pad(name, c, 3);
+			name.append("_position");
+			pad(name, positionIndex, 3);
+			name.append("_time");
+			pad(name, t, 9);
+			name.append("_z");
+			pad(name, z, 3);
+		}
+		else {
+			name.append('_');
+			pad(name, swapZandTime ? z : t, firstWidth);
+			name.append('_').append(channels[c]).append('_');
+			pad(name, swapZandTime ? t : z, lastWidth);
+		}
+		return name.append(".tif").toString();
+	}
+
+	/**
+	 * Finds a file by name without building the names of other files.
+	 *
+	 * @return The index of the file with the given name, or -1 if it is not in
+	 *         the list.
+	 */
+	public int indexOfName(final String name) {
+		final Matcher m = pattern.matcher(name);
+		if (!m.matches()) return -1;
+		final int z, c, t;
+		try {
+			if (mv2) {
+				c = Integer.parseInt(m.group(1));
+				t = Integer.parseInt(m.group(2));
+				z = Integer.parseInt(m.group(3));
+			}
+			else {
+				final int first = Integer.parseInt(m.group(1));
+				final int last = Integer.parseInt(m.group(3));
+				z = swapZandTime ? first : last;
+				t = swapZandTime ? last : first;
+				int channel = -1;
+				for (int i = 0; i < channels.length && channel < 0; i++) {
+					if (channels[i].equals(m.group(2))) channel = i;
+				}
+				c = channel;
+			}
+		}
+		catch (final NumberFormatException e) {
+			return -1;
+		}
+		if (z < 0 || z >= sizeZ || c < 0 || c >= sizeC || t < 0 || t >= frames) {
+			return -1;
+		}
+		final int index = z + sizeZ * (c + sizeC * t);
+		// the padding has to match as well
+		return getName(index).equals(name) ? index : -1;
+	}
+
+	/**
+	 * @return True if both lists name their files alike, whatever their number
+	 *         of time points.
+	 */
+	boolean hasTemplateOf(final GeneratedTIFFList other) {
+		return mv2 == other.mv2 && prefix.equals(other.prefix) &&
+			firstWidth == other.firstWidth && lastWidth == other.lastWidth &&
+			Arrays.equals(channels, other.channels) &&
+			swapZandTime == other.swapZandTime &&
+			positionIndex == other.positionIndex && sizeZ == other.sizeZ &&
+			sizeC == other.sizeC && Objects.equals(metadataFile, other.metadataFile);
+	}
+
+	// -- Template, for the metadata cache --
+
+	boolean isMV2() {
+		return mv2;
+	}
+
+	String getPrefix() {
+		return prefix;
+	}
+
+	int getFirstWidth() {
+		return firstWidth;
+	}
+
+	int getLastWidth() {
+		return lastWidth;
+	}
+
+	String[] getChannels() {
+		return channels;
+	}
+
+	boolean isSwapZandTime() {
+		return swapZandTime;
+	}
+
+	int getPositionIndex() {
+		return positionIndex;
+	}
+
+	int getSizeZ() {
+		return sizeZ;
+	}
+
+	int getSizeC() {
+		return sizeC;
+	}
+
+	int getFrames() {
+		return frames;
+	}
+
+	// -- Helper methods --
+
+	private static void pad(final StringBuilder name, final int value,
+		final int width)
+	{
+		final String digits = String.valueOf(value);
+		for (int i = digits.length(); i < width; i++)
+			name.append('0');
+		name.append(digits);
+	}
+}
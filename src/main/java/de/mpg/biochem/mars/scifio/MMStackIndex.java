@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.handle.DataHandleService;
+import org.scijava.io.location.BrowsableLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Plane index of a position saved by Micro-Manager as multi-page MMStack
+ * OME-TIFF files, named *_MMStack_Pos0.ome.tif and, once a file reaches its
+ * size limit, *_MMStack_Pos0_1.ome.tif and so on. For each plane the file and
+ * the offset of its IFD are recorded, so a plane is read by seeking straight
+ * to its IFD instead of opening one file per plane or walking the IFD chain.
+ * The index is taken from the index map Micro-Manager writes at the end of
+ * each file. Files without a complete index map, for example while they are
+ * still being acquired, are indexed with a single pass over their IFDs.
+ *
+ * @author Karl Duderstadt
+ */
+public class MMStackIndex {
+
+	/** Marks the index map offset in the file header. */
+	private static final int INDEX_MAP_OFFSET_HEADER = 54773648;
+
+	/** Marks the start of the index map. */
+	private static final int INDEX_MAP_HEADER = 3453623;
+
+	/** Private tag holding the JSON metadata of each plane. */
+	private static final int MM_METADATA_TAG = 51123;
+
+	private static final Pattern STACK_FILE = Pattern.compile(
+		"(.*_MMStack_Pos\\d+)(_\\d+)?\\.ome\\.tif");
+
+	private static final Pattern STACK_METADATA = Pattern.compile(
+		"(.*_MMStack_Pos(\\d+))_metadata\\.txt");
+
+	private static final Pattern CHANNEL_INDEX = Pattern.compile(
+		"\"ChannelIndex\"\\s*:\\s*(\\d+)");
+
+	private static final Pattern SLICE_INDEX = Pattern.compile(
+		"\"SliceIndex\"\\s*:\\s*(\\d+)");
+
+	private static final Pattern FRAME_INDEX = Pattern.compile(
+		"\"FrameIndex\"\\s*:\\s*(\\d+)");
+
+	private int size;
+
+	/**
+	 * Channel, slice and frame of each plane as written by Micro-Manager. A
+	 * channel of -1 marks a plane without coordinates, whose slice is instead
+	 * its number in acquisition order.
+	 */
+	private int[] channels = new int[16], slices = new int[16],
+			frames = new int[16];
+
+	/** Index into the file list of each plane. */
+	private int[] files = new int[16];
+
+	private long[] offsets = new long[16];
+
+	/** True if the first file indexed is little-endian. */
+	private boolean littleEndian;
+
+	// -- File names --
+
+	/**
+	 * @return True if the name is that of an MMStack file, including the files
+	 *         a position is split into.
+	 */
+	public static boolean isStackFile(final String name) {
+		return STACK_FILE.matcher(name).matches();
+	}
+
+	/** @return True if the name is that of the metadata file of a position. */
+	public static boolean isStackMetadata(final String name) {
+		return STACK_METADATA.matcher(name).matches();
+	}
+
+	/**
+	 * @return The name of the metadata file of the position the given MMStack
+	 *         file belongs to, or null if it is not an MMStack file.
+	 */
+	public static String getMetadataName(final String name) {
+		final Matcher m = STACK_FILE.matcher(name);
+		return m.matches() ? stripPath(m.group(1)) + "_metadata.txt" : null;
+	}
+
+	/**
+	 * @return The position number of a metadata file name, or -1 if it is not
+	 *         that of an MMStack position.
+	 */
+	public static int getPositionNumber(final String name) {
+		final Matcher m = STACK_METADATA.matcher(name);
+		return m.matches() ? Integer.parseInt(m.group(2)) : -1;
+	}
+
+	/**
+	 * Lists the files of the position with the given metadata file in order,
+	 * starting with *_MMStack_Pos0.ome.tif followed by the numbered files it
+	 * was split into.
+	 */
+	public static List<Location> listFiles(
+		final DataHandleService dataHandleService,
+		final BrowsableLocation metadataFile) throws IOException
+	{
+		final Matcher m = STACK_METADATA.matcher(metadataFile.getName());
+		final List<Location> files = new ArrayList<>();
+		if (!m.matches()) return files;
+		final String base = stripPath(m.group(1));
+		BrowsableLocation file = metadataFile.sibling(base + ".ome.tif");
+		while (dataHandleService.exists(file)) {
+			files.add(file);
+			file = metadataFile.sibling(base + "_" + files.size() + ".ome.tif");
+		}
+		return files;
+	}
+
+	// -- Indexing --
+
+	/**
+	 * Indexes the planes of the given files, in the order they are listed.
+	 *
+	 * @param position Index of the position the files belong to. Index map
+	 *          entries of other positions are skipped.
+	 */
+	public static MMStackIndex read(final DataHandleService dataHandleService,
+		final List<Location> files, final int position) throws IOException
+	{
+		final MMStackIndex index = new MMStackIndex();
+		for (int f = 0; f < files.size(); f++) {
+			try (DataHandle<Location> handle = dataHandleService.create(files.get(
+				f)))
+			{
+				if (f == 0) index.littleEndian = handle.length() >= 2 &&
+					readByteOrder(handle) == ByteOrder.LITTLE_ENDIAN;
+				if (!index.readIndexMap(handle, f, position)) index.readIFDs(handle,
+					f);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Adds the planes of the position listed in the index map of the file.
+	 *
+	 * @return False if the file has no complete index map, or none of its
+	 *         entries belong to the position.
+	 */
+	private boolean readIndexMap(final DataHandle<Location> handle,
+		final int file, final int position) throws IOException
+	{
+		final long length = handle.length();
+		if (length < 16) return false;
+		final ByteOrder order = readByteOrder(handle);
+		if (order == null) return false;
+		final ByteBuffer header = read(handle, 8, 8, order);
+		if (header.getInt() != INDEX_MAP_OFFSET_HEADER) return false;
+		final long mapOffset = header.getInt() & 0xffffffffL;
+		if (mapOffset == 0 || mapOffset + 8 > length) return false;
+
+		final ByteBuffer map = read(handle, mapOffset, 8, order);
+		if (map.getInt() != INDEX_MAP_HEADER) return false;
+		final long count = map.getInt() & 0xffffffffL;
+		// entries are read into one buffer, larger maps are not written
+		if (count > Integer.MAX_VALUE / 20 || mapOffset + 8 + count * 20 > length)
+		{
+			return false;
+		}
+
+		final ByteBuffer entries = read(handle, mapOffset + 8, (int) count * 20,
+			order);
+		final int first = size;
+		for (int i = 0; i < count; i++) {
+			final int channel = entries.getInt();
+			final int slice = entries.getInt();
+			final int frame = entries.getInt();
+			final int entryPosition = entries.getInt();
+			final long offset = entries.getInt() & 0xffffffffL;
+			// an unwritten entry means the map is incomplete
+			if (offset == 0 || offset >= length) {
+				size = first;
+				return false;
+			}
+			if (entryPosition != position) continue;
+			add(channel, slice, frame, file, offset);
+		}
+		return size > first || count == 0;
+	}
+
+	/**
+	 * Adds the planes of the file by walking its IFD chain once, taking the
+	 * coordinates of each plane from its Micro-Manager metadata tag.
+	 */
+	private void readIFDs(final DataHandle<Location> handle, final int file)
+		throws IOException
+	{
+		final long length = handle.length();
+		final ByteOrder order = length < 8 ? null : readByteOrder(handle);
+		if (order == null) return;
+		final ByteBuffer header = read(handle, 2, 6, order);
+		// MMStack files are never BigTIFF
+		if (header.getShort() != 42) return;
+		long offset = header.getInt() & 0xffffffffL;
+		long previous = 0;
+		while (offset > previous && offset + 2 <= length) {
+			final int count = read(handle, offset, 2, order).getShort() & 0xffff;
+			if (offset + 6 + count * 12L > length) return;
+			final ByteBuffer entries = read(handle, offset + 2, count * 12 + 4,
+				order);
+			String json = null;
+			for (int i = 0; i < count; i++) {
+				final int tag = entries.getShort() & 0xffff;
+				entries.getShort(); // type, always ASCII
+				final long valueCount = entries.getInt() & 0xffffffffL;
+				final long valueOffset = entries.getInt() & 0xffffffffL;
+				if (tag == MM_METADATA_TAG && valueCount > 4 && valueOffset +
+					valueCount <= length)
+				{
+					final ByteBuffer value = read(handle, valueOffset, (int) valueCount,
+						order);
+					json = new String(value.array(), StandardCharsets.UTF_8);
+				}
+			}
+			final int channel = json == null ? -1 : find(CHANNEL_INDEX, json);
+			final int slice = json == null ? -1 : find(SLICE_INDEX, json);
+			final int frame = json == null ? -1 : find(FRAME_INDEX, json);
+			if (channel < 0 || slice < 0 || frame < 0) add(-1, size, 0, file,
+				offset);
+			else add(channel, slice, frame, file, offset);
+			previous = offset;
+			offset = entries.getInt() & 0xffffffffL;
+		}
+	}
+
+	// -- Lookup --
+
+	/**
+	 * @return True if the pixels are stored little-endian. Micro-Manager writes
+	 *         all files of a position in the same byte order.
+	 */
+	public boolean isLittleEndian() {
+		return littleEndian;
+	}
+
+	void setLittleEndian(final boolean littleEndian) {
+		this.littleEndian = littleEndian;
+	}
+
+	/** @return The number of planes in the index. */
+	public int size() {
+		return size;
+	}
+
+	/** @return The channel of the entry, -1 if it has no coordinates. */
+	public int getChannel(final int i) {
+		return channels[i];
+	}
+
+	/** @return The slice of the entry, or its number if it has no coordinates. */
+	public int getSlice(final int i) {
+		return slices[i];
+	}
+
+	public int getFrame(final int i) {
+		return frames[i];
+	}
+
+	/** @return The index into the file list of the entry. */
+	public int getFile(final int i) {
+		return files[i];
+	}
+
+	/** @return The IFD offset of the entry. */
+	public long getOffset(final int i) {
+		return offsets[i];
+	}
+
+	/**
+	 * Resolves the file and IFD offset of every plane of a Z by C by T image.
+	 * Planes outside the image are left out.
+	 *
+	 * @param planeFiles Receives the index into the file list of each plane,
+	 *          -1 for planes not in the index.
+	 * @param ifdOffsets Receives the IFD offset of each plane, -1 for planes not
+	 *          in the index.
+	 * @param swapZandTime True if the Z and TIME axes of the image were
+	 *          swapped.
+	 */
+	public void fill(final int[] planeFiles, final long[] ifdOffsets,
+		final long sizeZ, final long sizeC, final long sizeT,
+		final boolean swapZandTime)
+	{
+		Arrays.fill(planeFiles, -1);
+		Arrays.fill(ifdOffsets, -1);
+		for (int i = 0; i < size; i++) {
+			long plane;
+			if (channels[i] < 0) plane = slices[i];
+			else {
+				final int z = swapZandTime ? frames[i] : slices[i];
+				final int t = swapZandTime ? slices[i] : frames[i];
+				if (z >= sizeZ || channels[i] >= sizeC || t >= sizeT) continue;
+				plane = z + sizeZ * (channels[i] + sizeC * t);
+			}
+			if (plane >= planeFiles.length) continue;
+			planeFiles[(int) plane] = files[i];
+			ifdOffsets[(int) plane] = offsets[i];
+		}
+	}
+
+	/** Adds an entry, see {@link #getChannel(int)}. */
+	void add(final int channel, final int slice, final int frame,
+		final int file, final long offset)
+	{
+		if (size == files.length) {
+			final int capacity = size * 2;
+			channels = Arrays.copyOf(channels, capacity);
+			slices = Arrays.copyOf(slices, capacity);
+			frames = Arrays.copyOf(frames, capacity);
+			files = Arrays.copyOf(files, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+		}
+		channels[size] = channel;
+		slices[size] = slice;
+		frames[size] = frame;
+		files[size] = file;
+		offsets[size] = offset;
+		size++;
+	}
+
+	// -- Helper methods --
+
+	private static ByteOrder readByteOrder(final DataHandle<Location> handle)
+		throws IOException
+	{
+		final byte[] order = new byte[2];
+		handle.seek(0);
+		handle.readFully(order);
+		if (order[0] == 'I' && order[1] == 'I') return ByteOrder.LITTLE_ENDIAN;
+		if (order[0] == 'M' && order[1] == 'M') return ByteOrder.BIG_ENDIAN;
+		return null;
+	}
+
+	private static ByteBuffer read(final DataHandle<Location> handle,
+		final long offset, final int length, final ByteOrder order)
+		throws IOException
+	{
+		final byte[] bytes = new byte[length];
+		handle.seek(offset);
+		handle.readFully(bytes);
+		return ByteBuffer.wrap(bytes).order(order);
+	}
+
+	private static String stripPath(final String name) {
+		return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf(
+			'\\')) + 1);
+	}
+
+	private static int find(final Pattern pattern, final String json) {
+		final Matcher m = pattern.matcher(json);
+		return m.find() ? Integer.parseInt(m.group(1)) : -1;
+	}
+}
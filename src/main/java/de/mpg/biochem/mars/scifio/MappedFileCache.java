@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Least recently used cache of memory mapped TIFF files. On local SSD or NVMe
+ * storage the pixels of a mapped file are served from the page cache and
+ * copied once into the plane, instead of going through the buffered reads of
+ * a {@link org.scijava.io.handle.DataHandle}. Only local files up to 2 GB are
+ * mapped. A mapping is dropped when the length of its file changes and is
+ * released by the garbage collector once it is evicted.
+ *
+ * @author Karl Duderstadt
+ */
+class MappedFileCache {
+
+	private final Map<Location, MappedByteBuffer> mappings;
+
+	/**
+	 * @param capacity Maximum number of files kept mapped, at least 1.
+	 */
+	MappedFileCache(final int capacity) {
+		mappings = new LinkedHashMap<Location, MappedByteBuffer>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<Location, MappedByteBuffer> eldest)
+			{
+				return size() > Math.max(1, capacity);
+			}
+		};
+	}
+
+	/**
+	 * @return A read-only view of the whole file, or null if the file cannot be
+	 *         mapped. The view is private to the caller.
+	 */
+	ByteBuffer get(final Location location) throws IOException {
+		if (!(location instanceof FileLocation)) return null;
+		final File file = ((FileLocation) location).getFile();
+		final long length = file.length();
+		if (length == 0 || length > Integer.MAX_VALUE) return null;
+
+		MappedByteBuffer mapped;
+		synchronized (this) {
+			mapped = mappings.get(location);
+		}
+		if (mapped == null || mapped.capacity() != length) {
+			try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ))
+			{
+				// the mapping stays valid after the channel is closed
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			}
+			synchronized (this) {
+				mappings.put(location, mapped);
+			}
+		}
+		return mapped.asReadOnlyBuffer();
+	}
+
+	synchronized void clear() {
+		mappings.clear();
+	}
+}
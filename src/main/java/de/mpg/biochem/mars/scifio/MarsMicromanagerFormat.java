@@ -37,37 +37,68 @@ import io.scif.ByteArrayReader;
 import io.scif.DefaultTranslator;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.DefaultMetaTable;
 import io.scif.ImageMetadata;
+import io.scif.MetaTable;
 import io.scif.Translator;
 import io.scif.config.SCIFIOConfig;
 import io.scif.formats.MinimalTIFFFormat;
+import io.scif.formats.tiff.IFD;
+import io.scif.formats.tiff.TiffParser;
 import io.scif.services.FormatService;
 import io.scif.services.TranslatorService;
 import io.scif.util.FormatTools;
 import io.scif.xml.BaseHandler;
 import io.scif.xml.XMLService;
 
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PrimitiveIterator;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.imagej.axis.Axes;
 import net.imagej.axis.CalibratedAxis;
 import net.imagej.axis.DefaultLinearAxis;
+import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.optional.CacheOptions.CacheType;
+import net.imglib2.type.NativeType;
 
 import org.scijava.Priority;
 import org.scijava.io.handle.DataHandle;
 import org.scijava.io.handle.DataHandleService;
 import org.scijava.io.location.BrowsableLocation;
+import org.scijava.io.location.BytesLocation;
+import org.scijava.io.location.FileLocation;
 import org.scijava.io.location.Location;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
@@ -100,6 +131,121 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 	 */
 	private static final String XML = "Acqusition.xml";
 
+	/**
+	 * {@link SCIFIOConfig} key for the number of threads used to parse the
+	 * positions of a multi-position dataset. Defaults to the number of
+	 * available processors.
+	 */
+	public static final String PARSE_THREADS = "mars.micromanager.parseThreads";
+
+	/**
+	 * {@link SCIFIOConfig} key enabling the binary metadata cache. When true, the
+	 * parsed metadata of each position is stored in a sidecar next to its
+	 * metadata file and reused while that file is unchanged. Off by default.
+	 */
+	public static final String METADATA_CACHE = "mars.micromanager.metadataCache";
+
+	/**
+	 * {@link SCIFIOConfig} key for a directory holding the metadata cache files
+	 * instead of the acquisition folders, for example when those are read-only.
+	 * Setting it enables the cache.
+	 */
+	public static final String METADATA_CACHE_DIR =
+		"mars.micromanager.metadataCacheDir";
+
+	/**
+	 * {@link SCIFIOConfig} key enabling live-acquisition mode for datasets that
+	 * Micro-Manager is still writing. An incomplete trailing plane block is
+	 * ignored instead of failing the parse, the TIME axis only covers the frames
+	 * acquired so far and {@link Parser#update(Metadata)} picks up newly
+	 * appended planes.
+	 */
+	public static final String LIVE = "mars.micromanager.live";
+
+	/**
+	 * {@link SCIFIOConfig} key for the interval in milliseconds at which a live
+	 * dataset is checked for new planes in the background. When unset or 0,
+	 * the dataset only grows on calls to {@link Parser#update(Metadata)}.
+	 */
+	public static final String LIVE_POLL_INTERVAL =
+		"mars.micromanager.livePollInterval";
+
+	/**
+	 * {@link SCIFIOConfig} key for the number of idle TIFF readers the
+	 * {@link Reader} keeps open, with their parsed headers, for reading further
+	 * planes of the same files.
+	 * Defaults to {@value #DEFAULT_TIFF_CACHE_SIZE}.
+	 */
+	public static final String TIFF_CACHE_SIZE = "mars.micromanager.tiffCacheSize";
+
+	static final int DEFAULT_TIFF_CACHE_SIZE = 16;
+
+	/**
+	 * {@link SCIFIOConfig} key for the number of planes the {@link Reader} reads
+	 * ahead in the background once planes of an image are requested in order.
+	 * Only whole planes are read ahead. When unset or 0, planes are only read
+	 * when requested.
+	 */
+	public static final String PREFETCH_DEPTH = "mars.micromanager.prefetchDepth";
+
+	/**
+	 * {@link SCIFIOConfig} key for the number of threads reading planes ahead,
+	 * see {@link #PREFETCH_DEPTH}. Defaults to
+	 * {@value #DEFAULT_PREFETCH_THREADS}.
+	 */
+	public static final String PREFETCH_THREADS =
+		"mars.micromanager.prefetchThreads";
+
+	static final int DEFAULT_PREFETCH_THREADS = 2;
+
+	/**
+	 * {@link SCIFIOConfig} key enabling memory mapped reads. When true, local
+	 * TIFF files that match the header template of their image are mapped and
+	 * their pixels copied straight from the page cache, and
+	 * {@link Reader#openPlaneView} hands out views of them. Meant for local SSD
+	 * or NVMe storage, off by default. Up to {@link #TIFF_CACHE_SIZE} files stay
+	 * mapped.
+	 */
+	public static final String MEMORY_MAP = "mars.micromanager.memoryMap";
+
+	/**
+	 * {@link SCIFIOConfig} key for the number of threads reading the planes of
+	 * one {@link Reader#openPlanes} call. Defaults to 1.
+	 */
+	public static final String BATCH_THREADS = "mars.micromanager.batchThreads";
+
+	/**
+	 * {@link SCIFIOConfig} key for the size in MB of the {@link Reader}'s cache
+	 * of recently read whole planes, which are evicted least recently used
+	 * first. When unset or 0, planes are not cached.
+	 */
+	public static final String PLANE_CACHE_SIZE =
+		"mars.micromanager.planeCacheSize";
+
+	/**
+	 * {@link SCIFIOConfig} key to compress the planes in the plane cache, so
+	 * more of them fit in its size, see {@link #PLANE_CACHE_SIZE}. The
+	 * compression is lossless and suited to 12 and 16 bit camera images.
+	 */
+	public static final String PLANE_CACHE_COMPRESSION =
+		"mars.micromanager.planeCacheCompression";
+
+	/**
+	 * {@link SCIFIOConfig} key to keep the planes of the plane cache outside the
+	 * Java heap, see {@link #PLANE_CACHE_SIZE}.
+	 */
+	public static final String PLANE_CACHE_OFF_HEAP =
+		"mars.micromanager.planeCacheOffHeap";
+
+	/**
+	 * {@link SCIFIOConfig} key for the number of cells the images of
+	 * {@link Reader#openCellImg} keep loaded, evicted least recently used
+	 * first. When unset or 0, cells are held by soft references and only
+	 * dropped when the heap runs low.
+	 */
+	public static final String CELL_CACHE_SIZE =
+		"mars.micromanager.cellCacheSize";
+
 	// -- AbstractFormat Methods --
 
 	@Override
@@ -107,6 +253,66 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		return new String[] { "tif", "tiff", "txt", "xml" };
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Reads an integer option from the given {@link SCIFIOConfig}, which is a
+	 * plain map, so values may have been stored as numbers or strings.
+	 */
+	static int getConfigInt(final SCIFIOConfig config, final String key,
+		final int defaultValue)
+	{
+		final Object value = config == null ? null : config.get(key);
+		if (value instanceof Number) return ((Number) value).intValue();
+		if (value instanceof String) {
+			try {
+				return Integer.parseInt(((String) value).trim());
+			}
+			catch (final NumberFormatException e) {
+				return defaultValue;
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a boolean option from the given {@link SCIFIOConfig}, accepting
+	 * Boolean values as well as strings.
+	 */
+	static boolean getConfigBoolean(final SCIFIOConfig config, final String key,
+		final boolean defaultValue)
+	{
+		final Object value = config == null ? null : config.get(key);
+		if (value instanceof Boolean) return (Boolean) value;
+		if (value instanceof String) return Boolean.parseBoolean(((String) value)
+			.trim());
+		return defaultValue;
+	}
+
+	/**
+	 * Waits for a task, rethrowing its exception.
+	 *
+	 * @param action What the task does, for the message when interrupted.
+	 */
+	static void waitFor(final Future<?> future, final String action)
+		throws IOException, FormatException
+	{
+		try {
+			future.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while " + action, e);
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof FormatException) throw (FormatException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new FormatException(cause);
+		}
+	}
+
 	// -- Nested Classes --
 
 	public static class Metadata extends AbstractMetadata {
@@ -115,6 +321,9 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 
 		private List<Position> positions;
 
+		/** Polls live positions for new planes, see {@link #LIVE_POLL_INTERVAL}. */
+		private ScheduledExecutorService liveUpdater;
+
 		// -- MicromanagerMetadata getters and setters --
 
 		public List<Position> getPositions() {
@@ -132,10 +341,13 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 
 			for (int i = 0; i < getImageCount(); i++) {
 				final ImageMetadata ms = get(i);
+				final Position p = positions == null || i >= positions.size() ? null
+					: positions.get(i);
 
 				ms.setAxisTypes(Axes.X, Axes.Y, Axes.Z, Axes.CHANNEL, Axes.TIME);
 				ms.setPlanarAxisCount(2);
-				ms.setLittleEndian(false);
+				// planes of multi-page files are read in the byte order of the file
+				ms.setLittleEndian(p != null && p.isLittleEndian());
 				ms.setIndexed(false);
 				ms.setFalseColor(false);
 				ms.setMetadataComplete(true);
@@ -145,6 +357,15 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		@Override
 		public void close(final boolean fileOnly) throws IOException {
 			super.close(fileOnly);
+			if (liveUpdater != null) {
+				liveUpdater.shutdownNow();
+				liveUpdater = null;
+			}
+			if (positions != null) {
+				for (final Position p : positions) {
+					if (p.planeReader != null) p.planeReader.close();
+				}
+			}
 			//if (!fileOnly) {
 			//	 s = null;
 			//}
@@ -154,12 +375,51 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 
 	public static class Checker extends AbstractChecker {
 
+		// -- Constants --
+
+		/** Number of leading bytes of a metadata file searched for a marker. */
+		private static final int SNIFF_LENGTH = 1048576;
+
+		private static final int SNIFF_BUFFER = 8192;
+
+		/** Maximum number of metadata files remembered by the check cache. */
+		private static final int CHECK_CACHE_SIZE = 256;
+
+		/** Byte patterns identifying a Micro-Manager metadata file. */
+		private static final byte[][] MARKERS = { "Micro-Manager".getBytes(
+			StandardCharsets.US_ASCII), "micromanager".getBytes(
+				StandardCharsets.US_ASCII), "MicroManagerVersion".getBytes(
+					StandardCharsets.US_ASCII) };
+
+		/**
+		 * Results of checking metadata files, shared between checker instances so
+		 * that probing every TIFF of a large folder reads the sibling metadata
+		 * file only once. Entries are invalidated when the size or modification
+		 * time of the file changes.
+		 */
+		private static final Map<Location, CheckResult> CHECK_CACHE = Collections
+			.synchronizedMap(new LinkedHashMap<Location, CheckResult>(16, 0.75f,
+				true)
+			{
+
+				@Override
+				protected boolean removeEldestEntry(
+					final Map.Entry<Location, CheckResult> eldest)
+				{
+					return size() > CHECK_CACHE_SIZE;
+				}
+			});
+
+		// -- Fields --
+
 		@Parameter
 		private FormatService formatService;
 
 		@Parameter
 		private DataHandleService dataHandleService;
 
+		private io.scif.Checker tiffChecker;
+
 		// -- Checker API Methods --
 
 		@Override
@@ -184,7 +444,7 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 
 				// Search for metadata file in the vicinity + check image file
 				try (DataHandle<Location> handle = dataHandleService.create(location)) {
-					return checkImageFile((BrowsableLocation) location, config, handle);
+					return checkImageFile((BrowsableLocation) location, handle);
 				}
 			}
 			catch (final IOException e) {
@@ -194,17 +454,27 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		}
 
 		private boolean checkImageFile(final BrowsableLocation location,
-			final SCIFIOConfig config, final DataHandle<Location> handle)
+			final DataHandle<Location> handle)
 		{
 			try {
-				final Location metaFile = location.sibling(METADATA);
-				final boolean validMetaData = isFormat(handle);
+				// the metadata file is shared by the whole folder and its result is
+				// cached, so check it before looking at the image itself
+				final String stackMetadata = MMStackIndex.getMetadataName(location
+					.getName());
+				Location metaFile = location.sibling(stackMetadata == null ? METADATA
+					: stackMetadata);
+				if (stackMetadata == null && !dataHandleService.exists(metaFile)) {
+					metaFile = location.sibling(NDTiffIndex.INDEX);
+				}
+				final boolean validMetaData;
+				try (DataHandle<Location> metaHandle = dataHandleService.create(
+					metaFile))
+				{
+					validMetaData = checkMetadataHandle(metaHandle);
+				}
 				if (!validMetaData) return false;
-				final io.scif.Checker checker;
-				checker = formatService.getFormatFromClass(MinimalTIFFFormat.class)
-					.createChecker();
-				final boolean validTIFF = checker.isFormat(handle);
-				return validTIFF && isFormat(metaFile, config);
+				handle.seek(0l);
+				return getTIFFChecker().isFormat(handle);
 			}
 			catch (final FormatException | IOException e) {
 				log().error("Error when checking format: ", e);
@@ -218,7 +488,6 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		{
 			final Location location = handle.get();
 			if (validMetadataFile(location)) {
-				handle.seek(0l);
 				return checkMetadataHandle(handle);
 			}
 
@@ -226,23 +495,112 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 			return location instanceof BrowsableLocation;
 		}
 
+		private io.scif.Checker getTIFFChecker() throws FormatException {
+			if (tiffChecker == null) {
+				tiffChecker = formatService.getFormatFromClass(MinimalTIFFFormat.class)
+					.createChecker();
+			}
+			return tiffChecker;
+		}
+
 		private boolean validMetadataFile(final Location location) {
 			if (location == null) return false;
 			final String name = location.getName();
 			return name.equals(METADATA) || name.endsWith(File.separator +
-				METADATA) || name.equals(XML) || name.endsWith(File.separator + XML);
+				METADATA) || name.equals(XML) || name.endsWith(File.separator + XML) ||
+				MMStackIndex.isStackMetadata(name) || NDTiffIndex.isIndex(name);
 		}
 
 		private boolean checkMetadataHandle(final DataHandle<Location> handle)
 			throws IOException
 		{
 			if (!handle.exists()) return false;
-			final int blockSize = 1048576;
-
 			final long length = handle.length();
-			final String data = handle.readString((int) Math.min(blockSize, length));	
-			return length > 0 && (data.contains("Micro-Manager") || data.contains(
-					"micromanager") || data.contains("MicroManagerVersion"));
+			if (length <= 0) return false;
+
+			final Location location = handle.get();
+			if (location != null && NDTiffIndex.isIndex(location.getName())) {
+				return NDTiffIndex.isIndex(handle);
+			}
+			final Date modified = handle.lastModified();
+			final long lastModified = modified == null ? -1 : modified.getTime();
+			if (location != null) {
+				final CheckResult cached = CHECK_CACHE.get(location);
+				if (cached != null && cached.length == length &&
+					cached.lastModified == lastModified) return cached.valid;
+			}
+
+			handle.seek(0l);
+			final boolean valid = containsMarker(handle, Math.min(SNIFF_LENGTH,
+				length));
+			if (location != null) {
+				CHECK_CACHE.put(location, new CheckResult(length, lastModified, valid));
+			}
+			return valid;
+		}
+
+		/**
+		 * Scans up to limit bytes from the current position of the handle for any
+		 * of the {@link #MARKERS}, without decoding the bytes to text. The tail of
+		 * each buffer is carried over so markers spanning two reads are found.
+		 */
+		private static boolean containsMarker(final DataHandle<Location> handle,
+			final long limit) throws IOException
+		{
+			int overlap = 0;
+			for (final byte[] marker : MARKERS)
+				overlap = Math.max(overlap, marker.length - 1);
+
+			final byte[] buffer = new byte[SNIFF_BUFFER + overlap];
+			int filled = 0;
+			long remaining = limit;
+			while (remaining > 0) {
+				final int read = handle.read(buffer, filled, (int) Math.min(
+					SNIFF_BUFFER, remaining));
+				if (read <= 0) break;
+				remaining -= read;
+				filled += read;
+				if (hasMarker(buffer, filled)) return true;
+				final int keep = Math.min(overlap, filled);
+				System.arraycopy(buffer, filled - keep, buffer, 0, keep);
+				filled = keep;
+			}
+			return false;
+		}
+
+		private static boolean hasMarker(final byte[] buffer,
+			final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				final byte b = buffer[i];
+				markers:
+				for (final byte[] marker : MARKERS) {
+					if (marker[0] != b || i + marker.length > length) continue;
+					for (int j = 1; j < marker.length; j++) {
+						if (buffer[i + j] != marker[j]) continue markers;
+					}
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/** Cached outcome of checking one metadata file. */
+		private static final class CheckResult {
+
+			private final long length;
+
+			private final long lastModified;
+
+			private final boolean valid;
+
+			private CheckResult(final long length, final long lastModified,
+				final boolean valid)
+			{
+				this.length = length;
+				this.lastModified = lastModified;
+				this.valid = valid;
+			}
 		}
 	}
 
@@ -252,6 +610,14 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 
 		public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss Z";
 
+		private static final Pattern VERSION_NUMBER = Pattern.compile("\\d+");
+
+		/**
+		 * Number of bytes at the start of a metadata.txt file searched for the
+		 * MicroManagerVersion, which is part of the Summary block.
+		 */
+		private static final long VERSION_SEARCH_LIMIT = 8 << 20;
+
 		// -- Fields --
 
 		@Parameter
@@ -265,11 +631,25 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		
 		@Parameter
 		private PrefService prefService;
-		
-		private boolean swapZandTime = false;
+
+		/** Optional executor for parsing positions, see {@link #PARSE_THREADS}. */
+		private ExecutorService executorService;
 
 		// -- MicromanagerParser API methods --
 
+		/**
+		 * Sets the executor used to parse the positions of multi-position
+		 * datasets. When null, a pool sized by {@link #PARSE_THREADS} is created
+		 * for each parse.
+		 */
+		public void setExecutorService(final ExecutorService executorService) {
+			this.executorService = executorService;
+		}
+
+		public ExecutorService getExecutorService() {
+			return executorService;
+		}
+
 		public void populateMetadata(final String[] jsonData,
 									 final Metadata source, final io.scif.Metadata dest)
 				throws FormatException, IOException
@@ -283,19 +663,18 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		{
 			source.createImageMetadata(jsonData.length);
 			final List<Position> positions = new ArrayList<>();
+			source.setPositions(positions);
 			for (int pos = 0; pos < jsonData.length; pos++) {
 				final Position p = new Position();
 				//p.metadataFile = "Position #" + (pos + 1);
 				positions.add(p);
-				
-				int[] version = getMicroManagerVersion(jsonData[pos]);
-	        	if (version[0] == 1 && version[1] >= 4) {
-	        		parsePositionMV1(jsonData[pos], source, pos);
-					if (buildTIFFList) buildTIFFListMV1(source, pos);
-	        	} else if (version[0] == 2) {
-	        		parsePositionMV2(jsonData[pos], source, pos);
-					if (buildTIFFList) buildTIFFListMV2(source, pos);
-	        	}
+
+				try (DataHandle<BytesLocation> handle = dataHandleService.create(
+					new BytesLocation(jsonData[pos].getBytes(StandardCharsets.UTF_8))))
+				{
+					parsePosition(handle, source, pos, source.getTable(),
+						buildTIFFList);
+				}
 			}
 			
 			translatorService.translate(source, dest, true);
@@ -311,11 +690,20 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 			final List<Position> positions = new ArrayList<>();
 			meta.setPositions(positions);
 
+			final BrowsableLocation file = asBrowsableLocation(stream);
+
+			// NDTiff datasets are laid out by their index alone
+			final BrowsableLocation ndTiffIndex = NDTiffIndex.isIndex(file
+				.getName()) ? file : file.sibling(NDTiffIndex.INDEX);
+			if (ndTiffIndex != null && dataHandleService.exists(ndTiffIndex)) {
+				parseNDTiff(meta, ndTiffIndex);
+				return;
+			}
+
 			log().info("Reading metadata file");
 
 			// find metadata.txt
 
-			final BrowsableLocation file = asBrowsableLocation(stream);
 			BrowsableLocation parentFile = file.parent();
 			final BrowsableLocation metadataFile = file.sibling(METADATA);
 
@@ -326,16 +714,40 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 
 			// look for other positions
 
-			if (parentFile.getName().contains("Pos_")) {
+			if (MMStackIndex.isStackFile(file.getName()) || MMStackIndex
+				.isStackMetadata(file.getName()))
+			{
+				// MMStack positions are files of the same folder
+				final List<BrowsableLocation> files = new ArrayList<>();
+				for (final BrowsableLocation child : parentFile.children()) {
+					if (MMStackIndex.isStackMetadata(child.getName())) files.add(child);
+				}
+				files.sort(Comparator.comparingInt(f -> MMStackIndex
+					.getPositionNumber(f.getName())));
+				if (files.isEmpty()) {
+					throw new IOException(
+						"MicromanagerFormat: No companion metadata file found!");
+				}
+
+				for (final BrowsableLocation child : files) {
+					final Position pos = new Position();
+					pos.metadataFile = child;
+					positions.add(pos);
+				}
+			}
+			else if (parentFile.getName().contains("Pos_")) {
 				parentFile = parentFile.parent();
-				final Set<BrowsableLocation> dirs = parentFile.children();
+				final List<BrowsableLocation> dirs = new ArrayList<>();
+				for (final BrowsableLocation dir : parentFile.children()) {
+					if (dir.getName().contains("Pos_")) dirs.add(dir);
+				}
+				// children() makes no ordering guarantee
+				dirs.sort(Comparator.comparing(BrowsableLocation::getName));
 
 				for (final BrowsableLocation dir : dirs) {
-					if (dir.getName().contains("Pos_")) {
-						final Position pos = new Position();
-						pos.metadataFile = dir.child(METADATA);
-						positions.add(pos);
-					}
+					final Position pos = new Position();
+					pos.metadataFile = dir.child(METADATA);
+					positions.add(pos);
 				}
 			}
 			else {
@@ -347,11 +759,90 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 			final int imageCount = positions.size();
 			meta.createImageMetadata(imageCount);
 
-			for (int i = 0; i < imageCount; i++) {
-				parsePosition(meta, i);
+			parsePositions(meta, config);
+
+			final int pollInterval = getConfigInt(config, LIVE_POLL_INTERVAL, 0);
+			if (getConfigBoolean(config, LIVE, false) && pollInterval > 0) {
+				startLiveUpdates(meta, pollInterval);
+			}
+		}
+
+		/**
+		 * Creates one position for each image of an NDTiff dataset from its
+		 * index. Neither the TIFF headers nor the JSON metadata of the images are
+		 * read, so there is no per-plane metadata.
+		 */
+		private void parseNDTiff(final Metadata meta,
+			final BrowsableLocation indexFile) throws IOException, FormatException
+		{
+			log().info("Reading NDTiff index");
+			final NDTiffIndex index = NDTiffIndex.read(dataHandleService,
+				indexFile);
+			final List<Location> tiffs = new ArrayList<>();
+			for (final String name : index.getFileNames())
+				tiffs.add(indexFile.sibling(name));
+			if (!tiffs.isEmpty()) {
+				// the index does not record the byte order of the pixels
+				try (DataHandle<Location> handle = dataHandleService.create(tiffs.get(
+					0)))
+				{
+					index.setLittleEndian(handle.length() < 1 || handle.readByte() == 'I');
+				}
+			}
+
+			final List<Position> positions = meta.getPositions();
+			meta.createImageMetadata(index.getImageCount());
+			final int planes = index.getSizeZ() * index.getSizeC() * index
+				.getSizeT();
+			for (int i = 0; i < index.getImageCount(); i++) {
+				final Position p = new Position();
+				p.metadataFile = indexFile;
+				p.positionIndex = i;
+				p.channels = index.getChannelNames();
+				p.voltage = new double[0];
+				p.tiffs = tiffs;
+				p.littleEndian = index.isLittleEndian();
+				final int[] planeFiles = new int[planes];
+				final long[] pixelOffsets = new long[planes];
+				index.fill(i, planeFiles, pixelOffsets, (z, c, t) -> p.planeMetadata
+					.addRow(p.blockIndex.put(z, c, t, -1, 0)));
+				p.planeFiles = planeFiles;
+				p.fixedPlaneFiles = true;
+				p.pixelOffsets = pixelOffsets;
+				positions.add(p);
+
+				final ImageMetadata ms = meta.get(i);
+				ms.setName(indexFile.parent().getName() + " (Pos" + i + ")");
+				ms.setAxisLength(Axes.X, index.getWidth());
+				ms.setAxisLength(Axes.Y, index.getHeight());
+				ms.setAxisLength(Axes.Z, index.getSizeZ());
+				ms.setAxisLength(Axes.CHANNEL, index.getSizeC());
+				ms.setAxisLength(Axes.TIME, index.getSizeT());
+				ms.setPixelType(index.getPixelType());
+				ms.setBitsPerPixel(index.getBitsPerPixel());
 			}
 		}
 
+		/**
+		 * Parses the plane blocks appended to the metadata files of live
+		 * positions since the last parse or update and extends the TIME axis,
+		 * TIFF list and plane file table accordingly. Only the appended part of
+		 * each file is read. The directories of live positions are listed again
+		 * to pick up newly written TIFFs, see {@link Position#refreshFiles()}.
+		 * Positions that were not opened with {@link #LIVE} are left untouched.
+		 *
+		 * @return True if any position gained or completed planes.
+		 */
+		public boolean update(final Metadata meta) throws IOException,
+			FormatException
+		{
+			boolean grown = false;
+			for (int i = 0; i < meta.getPositions().size(); i++) {
+				grown |= updatePosition(meta, i);
+			}
+			return grown;
+		}
+
 		@Override
 		public Location[] getImageUsedFiles(final int imageIndex,
 			final boolean noPixels)
@@ -364,13 +855,14 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 					files.add(pos.xmlFile);
 				}
 				if (!noPixels) {
-					for (final Location tiff : pos.tiffs) {
+					for (int i = 0; i < pos.tiffs.size(); i++) {
 						try {
-							if (dataHandleService.exists(tiff)) files.add(tiff);
+							if (pos.fileExists(dataHandleService, i)) files.add(pos.tiffs
+								.get(i));
 						}
 						catch (final IOException exc) {
-							log().error("Could not check if location: " + tiff.getURI()
-								.toString() + " encountered exception: " + exc);
+							log().error("Could not check if location: " + pos.tiffs.get(i)
+								.getURI().toString() + " encountered exception: " + exc);
 						}
 					}
 				}
@@ -397,120 +889,407 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 
 		// -- Helper methods --
 
-		private void parsePosition(final Metadata meta, final int posIndex)
+		/**
+		 * Parses all positions, concurrently when there is more than one. Each
+		 * position only writes to its own {@link Position}, {@link ImageMetadata}
+		 * and a private {@link MetaTable}. The tables are merged into the global
+		 * table afterwards in position order, so the result does not depend on
+		 * scheduling.
+		 */
+		private void parsePositions(final Metadata meta, final SCIFIOConfig config)
 			throws IOException, FormatException
 		{
-			final Position pos = meta.getPositions().get(posIndex);
+			final int threads = getConfigInt(config, PARSE_THREADS, Runtime
+				.getRuntime().availableProcessors());
+			final boolean live = getConfigBoolean(config, LIVE, false);
+			for (final Position p : meta.getPositions()) {
+				p.live = live;
+			}
+			final int imageCount = meta.getPositions().size();
+			final MetaTable[] tables = new MetaTable[imageCount];
+			for (int i = 0; i < imageCount; i++) {
+				tables[i] = new DefaultMetaTable();
+			}
 
-			try (DataHandle<Location> handle = dataHandleService.create(
-				pos.metadataFile))
-			{
-				final long len = handle.length();
-				if (len > Integer.MAX_VALUE) {
-					throw new FormatException("MetadataFile at: " + pos.metadataFile
-						.getURI() + " is too large to be parsed!");
+			if (imageCount == 1 || (threads <= 1 && executorService == null)) {
+				for (int i = 0; i < imageCount; i++) {
+					parsePosition(meta, i, tables[i], config);
 				}
-				final String metaData = handle.readString((int) handle.length());
-
-				int[] version = getMicroManagerVersion(metaData);
-	        	if (version[0] == 1 && version[1] >= 4) {
-	        		parsePositionMV1(metaData, meta, posIndex);
-					buildTIFFListMV1(meta, posIndex);
-	        	} else if (version[0] == 2) {
-	        		parsePositionMV2(metaData, meta, posIndex);
-					buildTIFFListMV2(meta, posIndex);
-	        	}
 			}
-		}
-		
-		private int[] getMicroManagerVersion(String metaData) {
-			int[] version = new int[2];
-			int startIndex = metaData.indexOf("MicroManagerVersion");
-			int endIndex = metaData.indexOf(',', startIndex);
-			Pattern p = Pattern.compile("\\d+");
-	        Matcher m = p.matcher(metaData.substring(startIndex, endIndex));
-	        m.find();
-        	version[0] = Integer.valueOf(m.group());
-        	m.find();
-        	version[1] = Integer.valueOf(m.group());
-			return version;
-		}
-
-		private void buildTIFFListMV1(final Metadata meta, final int posIndex)
-				throws FormatException
-			{
+			else {
+				final ExecutorService executor = executorService != null
+					? executorService : Executors.newFixedThreadPool(Math.min(threads,
+						imageCount));
 				try {
-					final Position p = meta.getPositions().get(posIndex);
-					final ImageMetadata ms = meta.get(posIndex);
-					final BrowsableLocation parent = p.metadataFile.parent();
+					final List<Future<?>> futures = new ArrayList<>();
+					for (int i = 0; i < imageCount; i++) {
+						final int posIndex = i;
+						futures.add(executor.submit(() -> {
+							parsePosition(meta, posIndex, tables[posIndex], config);
+							return null;
+						}));
+					}
+					for (final Future<?> future : futures) {
+						waitFor(future, "parsing positions");
+					}
+				}
+				finally {
+					if (executor != executorService) executor.shutdownNow();
+				}
+			}
 
-					log().info("Finding image file names");
+			for (final MetaTable table : tables) {
+				meta.getTable().putAll(table);
+			}
+		}
 
-					// find the name of a TIFF file
-					p.tiffs = new ArrayList<>();
+		private void parsePosition(final Metadata meta, final int posIndex,
+			final MetaTable table, final SCIFIOConfig config) throws IOException,
+			FormatException
+		{
+			final Position pos = meta.getPositions().get(posIndex);
+			// a file that is still being written is not worth caching
+			final Location cache = pos.live ? null : getCacheLocation(pos, config);
+			final boolean checkZvsTime = prefService.getBoolean(
+				MarsMicromanagerFormat.class, "CheckZvsTIME", true);
 
-					// build list of TIFF files
-					buildTIFFListMV1(meta, posIndex, p.baseTiff);
-					// build list of TIFF files
-					//buildTIFFList(meta, posIndex, parent + File.separator + p.baseTiff);
-					
-					if (p.tiffs.size() == 0) {
-						log().info("Failed to generate tif file names");
-					}
-					
-					if (p.tiffs.isEmpty()) {
-						final List<String> uniqueZ = new ArrayList<>();
-						final List<String> uniqueC = new ArrayList<>();
-						final List<String> uniqueT = new ArrayList<>();
-
-						final Set<BrowsableLocation> fSet = parent.children();
-						final Location[] files = fSet.toArray(new Location[fSet.size()]);
-						Arrays.sort(files);
-						for (final Location file : files) {
-							final String name = file.getName();
-							if (FormatTools.checkSuffix(name, "tif") || FormatTools.checkSuffix(
-								name, "tiff"))
-							{
-								final String[] blocks = name.split("_");
-								if (!uniqueT.contains(blocks[1])) uniqueT.add(blocks[1]);
-								if (!uniqueC.contains(blocks[2])) uniqueC.add(blocks[2]);
-								if (!uniqueZ.contains(blocks[3])) uniqueZ.add(blocks[3]);
-
-								p.tiffs.add(file);
-							}
+			try (DataHandle<Location> handle = dataHandleService.create(
+				pos.metadataFile))
+			{
+				if (cache != null) {
+					try {
+						if (MetadataCache.read(dataHandleService, cache, handle,
+							checkZvsTime, meta.get(posIndex), pos, table))
+						{
+							log().info("Loaded metadata from cache " + cache.getName());
+							return;
 						}
+					}
+					catch (final IOException | RuntimeException e) {
+						log().warn("Ignoring unreadable metadata cache " + cache
+							.getName() + ": " + e);
+					}
+				}
 
-						ms.setAxisLength(Axes.Z, uniqueZ.size());
-						ms.setAxisLength(Axes.CHANNEL, uniqueC.size());
-						ms.setAxisLength(Axes.TIME, uniqueT.size());
+				parsePosition(handle, meta, posIndex, table, true);
 
-						if (p.tiffs.isEmpty()) {
-							throw new FormatException("Could not find TIFF files.");
-						}
+				if (cache != null) {
+					try {
+						MetadataCache.write(dataHandleService, cache, handle,
+							checkZvsTime, meta.get(posIndex), pos, table);
+					}
+					catch (final IOException e) {
+						log().warn("Could not write metadata cache " + cache.getName() +
+							": " + e);
 					}
 				}
-				catch (final IOException e) {
-					throw new FormatException(
-						"Encountered error when trying to find TIFF files.", e);
-				}
+			}
 		}
-		
-		private void buildTIFFListMV2(final Metadata meta, final int posIndex)
-				throws FormatException
-			{
-				try {
-					final Position p = meta.getPositions().get(posIndex);
-					final ImageMetadata ms = meta.get(posIndex);
-					final BrowsableLocation parent = p.metadataFile.parent();
 
-					log().info("Finding image file names");
-
-					// find the name of a TIFF file
-					p.tiffs = new ArrayList<>();
+		/**
+		 * @return The sidecar caching the parsed metadata of the position, or
+		 *         null if caching is disabled, see {@link #METADATA_CACHE} and
+		 *         {@link #METADATA_CACHE_DIR}.
+		 */
+		private Location getCacheLocation(final Position pos,
+			final SCIFIOConfig config) throws IOException
+		{
+			final Object dir = config == null ? null : config.get(
+				METADATA_CACHE_DIR);
+			if (dir != null && !dir.toString().trim().isEmpty()) {
+				final File directory = new File(dir.toString().trim());
+				if (!directory.isDirectory() && !directory.mkdirs()) {
+					log().warn("Could not create metadata cache directory " +
+						directory);
+					return null;
+				}
+				// one flat directory for all datasets, named by the metadata file
+				final String key = UUID.nameUUIDFromBytes(pos.metadataFile.getURI()
+					.toString().getBytes(StandardCharsets.UTF_8)).toString();
+				return new FileLocation(new File(directory, key +
+					MetadataCache.SUFFIX));
+			}
+			if (!getConfigBoolean(config, METADATA_CACHE, false)) return null;
+			return pos.metadataFile.sibling(pos.metadataFile.getName() +
+				MetadataCache.SUFFIX);
+		}
+
+		/**
+		 * Streams the metadata from the given handle. The file is never held in
+		 * memory as a whole, so there is no limit on its size.
+		 */
+		private void parsePosition(final DataHandle<?> handle, final Metadata meta,
+			final int posIndex, final MetaTable table, final boolean buildTIFFList)
+			throws IOException, FormatException
+		{
+			final int[] version = getMicroManagerVersion(new MetadataTokenizer(
+				handle, 0, VERSION_SEARCH_LIMIT));
+			final Position p = meta.getPositions().get(posIndex);
+			final MetadataTokenizer st = new MetadataTokenizer(handle);
+			st.setCompleteLinesOnly(p.live);
+			p.planeReader = new PlaneMetadataReader(dataHandleService, handle.get(),
+				version[0] == 2);
+			final boolean stack = MMStackIndex.isStackMetadata(p.metadataFile
+				.getName());
+			if (version[0] == 1 && version[1] >= 4) {
+				parsePositionMV1(st, meta, posIndex, table, false);
+				if (p.live) {
+					// decide on the planned dimensions before any frame arrived
+					if (p.blockIndex.size() == 0) checkZvsTime(p, meta.get(posIndex));
+					setAcquiredFrames(p, meta.get(posIndex));
+				}
+				if (buildTIFFList && stack) buildStackIndex(meta, posIndex);
+				else if (buildTIFFList) {
+					// the file name pattern is only known once a plane was written
+					if (p.live && p.baseTiff == null) p.tiffs = new ArrayList<>();
+					else buildTIFFListMV1(meta, posIndex);
+				}
+			}
+			else if (version[0] == 2) {
+				parsePositionMV2(st, meta, posIndex, table, false);
+				if (p.live) setAcquiredFrames(p, meta.get(posIndex));
+				if (buildTIFFList && stack) buildStackIndex(meta, posIndex);
+				else if (buildTIFFList) buildTIFFListMV2(meta, posIndex);
+			}
+			if (buildTIFFList) {
+				final long planeCount = meta.get(posIndex).getPlaneCount();
+				if (planeCount > Integer.MAX_VALUE) {
+					throw new FormatException("Too many planes in position " +
+						posIndex + ": " + planeCount);
+				}
+				p.buildPlaneFileTable(meta.get(posIndex));
+			}
+		}
+
+		/**
+		 * Swaps the Z and TIME axes if Z is larger and the CheckZvsTIME preference
+		 * is on.
+		 *
+		 * @return True if the axes were swapped.
+		 */
+		private boolean checkZvsTime(final Position p, final ImageMetadata ms) {
+			if (prefService.getBoolean(MarsMicromanagerFormat.class, "CheckZvsTIME", true) &&  ms.getAxisLength(Axes.TIME) < ms.getAxisLength(Axes.Z)) {
+				log().info("Z > T and check is turned on. Swapping Z and T!");
+
+				//Z is larger than TIME. Let's swap them!!
+				long frames = ms.getAxisLength(Axes.Z);
+				long sizeZ = ms.getAxisLength(Axes.TIME);
+
+				ms.setAxisLength(Axes.TIME, frames);
+				ms.setAxisLength(Axes.Z, sizeZ);
+				p.swapZandTime = true;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Parses the blocks appended to the metadata file of a live position, see
+		 * {@link #update(Metadata)}.
+		 */
+		private boolean updatePosition(final Metadata meta, final int posIndex)
+			throws IOException, FormatException
+		{
+			final Position p = meta.getPositions().get(posIndex);
+			if (!p.live || p.planeReader == null) return false;
+			final ImageMetadata ms = meta.get(posIndex);
+			// files of planes parsed earlier may have been written since
+			p.refreshFiles();
+
+			synchronized (p) {
+				// lookups keep using the lengths from before the update until it is
+				// done, the axes of ms change while the new blocks are parsed
+				p.publishSizes(ms);
+				try {
+					final int firstSlot = p.blockIndex.size();
+					p.firstChangedSlot = firstSlot;
+					final long frames = ms.getAxisLength(Axes.TIME);
+					try (DataHandle<Location> handle = dataHandleService.create(
+						p.metadataFile))
+					{
+						if (handle.length() <= p.parsedLength) return false;
+						final MetadataTokenizer st = new MetadataTokenizer(handle,
+							p.parsedLength);
+						st.setCompleteLinesOnly(true);
+						// summary entries are not repeated after the plane blocks
+						final MetaTable table = new DefaultMetaTable();
+						if (p.planeReader.isMV2()) parsePositionMV2(st, meta,
+							posIndex, table, true);
+						else parsePositionMV1(st, meta, posIndex, table, true);
+					}
+					setAcquiredFrames(p, ms);
+					if (p.firstChangedSlot >= p.blockIndex.size()) return false;
+
+					// T is the slowest axis, so new frames only append TIFFs and
+					// planes
+					final long framePlanes = ms.getAxisLength(Axes.Z) * ms
+						.getAxisLength(Axes.CHANNEL);
+					final int firstTiff = p.tiffs.size();
+					if (MMStackIndex.isStackMetadata(p.metadataFile.getName())) {
+						// new planes may be in any file, and the index map of a file
+						// is only written once it is complete
+						buildStackIndex(meta, posIndex);
+					}
+					else if (p.planeReader.isMV2()) {
+						buildTIFFListMV2(meta, posIndex, p.metadataFile.sibling(
+							"img"), firstTiff / framePlanes);
+					}
+					else if (p.baseTiff != null) {
+						buildTIFFListMV1(meta, posIndex, p.baseTiff, firstTiff /
+							framePlanes);
+					}
+					p.appendPlaneFiles(ms, p.firstChangedSlot);
+					log().debug("Position " + posIndex + " grew from " + frames +
+						" to " + ms.getAxisLength(Axes.TIME) + " frames");
+					return true;
+				}
+				finally {
+					p.publishSizes(ms);
+				}
+			}
+		}
+
+		/**
+		 * Sets the TIME axis of a live position to the frames that have at least
+		 * one plane block. Planes of the last frame without a block read as
+		 * blank until they arrive.
+		 */
+		private static void setAcquiredFrames(final Position p,
+			final ImageMetadata ms)
+		{
+			ms.setAxisLength(Axes.TIME, Math.max(1, p.blockIndex.getMaxT() + 1));
+		}
+
+		private void startLiveUpdates(final Metadata meta, final int interval) {
+			meta.liveUpdater = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread thread = new Thread(r, "Micro-Manager live update");
+				thread.setDaemon(true);
+				return thread;
+			});
+			meta.liveUpdater.scheduleWithFixedDelay(() -> {
+				try {
+					update(meta);
+				}
+				catch (final IOException | FormatException | RuntimeException e) {
+					log().warn("Could not update live dataset: " + e);
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Scans forward to the MicroManagerVersion entry, which is part of the
+		 * summary block at the start of the file.
+		 */
+		private int[] getMicroManagerVersion(final MetadataTokenizer st)
+			throws IOException, FormatException
+		{
+			while (st.hasMoreTokens()) {
+				final String token = st.nextToken();
+				final int startIndex = token.indexOf("MicroManagerVersion");
+				if (startIndex < 0) {
+					// the Summary block is over once the first plane block starts
+					final String line = token.trim();
+					if (line.startsWith("\"FrameKey") || line.startsWith("\"Coords-") ||
+						line.startsWith("\"Metadata-")) break;
+					continue;
+				}
+
+				final int[] version = new int[2];
+				final Matcher m = VERSION_NUMBER.matcher(token.substring(startIndex));
+				for (int i = 0; i < version.length; i++) {
+					if (!m.find()) {
+						throw new FormatException(
+							"Could not parse MicroManagerVersion from: " + token.trim());
+					}
+					version[i] = Integer.parseInt(m.group());
+				}
+				return version;
+			}
+			throw new FormatException("No MicroManagerVersion found in metadata.");
+		}
+
+		private void buildTIFFListMV1(final Metadata meta, final int posIndex)
+				throws FormatException
+			{
+				try {
+					final Position p = meta.getPositions().get(posIndex);
+					final ImageMetadata ms = meta.get(posIndex);
+					final BrowsableLocation parent = p.metadataFile.parent();
+
+					log().info("Finding image file names");
+
+					// find the name of a TIFF file
+					p.tiffs = new ArrayList<>();
+
+					// build list of TIFF files
+					buildTIFFListMV1(meta, posIndex, p.baseTiff, 0);
+					// build list of TIFF files
+					//buildTIFFList(meta, posIndex, parent + File.separator + p.baseTiff);
+
+					if (p.tiffs.size() == 0) {
+						log().info("Failed to generate tif file names");
+					}
+
+					if (p.tiffs.isEmpty()) {
+						final TIFFNameScanner scanner = TIFFNameScanner.scan(parent,
+							p.channels);
+						p.tiffs = scanner.getTIFFs();
+						p.planeFiles = scanner.getPlaneFiles();
+						p.fixedPlaneFiles = true;
+
+						ms.setAxisLength(Axes.Z, scanner.getSizeZ());
+						ms.setAxisLength(Axes.CHANNEL, scanner.getSizeC());
+						ms.setAxisLength(Axes.TIME, scanner.getSizeT());
+
+						if (p.tiffs.isEmpty()) {
+							throw new FormatException("Could not find TIFF files.");
+						}
+					}
+				}
+				catch (final IOException e) {
+					throw new FormatException(
+						"Encountered error when trying to find TIFF files.", e);
+				}
+		}
+
+		/**
+		 * Lists the MMStack files of the position and indexes their planes.
+		 */
+		private void buildStackIndex(final Metadata meta, final int posIndex)
+			throws FormatException
+		{
+			final Position p = meta.getPositions().get(posIndex);
+			try {
+				log().info("Indexing MMStack files");
+				p.tiffs = MMStackIndex.listFiles(dataHandleService, p.metadataFile);
+				p.stackIndex = MMStackIndex.read(dataHandleService, p.tiffs,
+					p.positionIndex);
+				if (p.tiffs.size() == 0) {
+					log().info("Failed to find MMStack files");
+				}
+			}
+			catch (final IOException e) {
+				throw new FormatException(
+					"Encountered error when trying to index MMStack files.", e);
+			}
+		}
+
+		private void buildTIFFListMV2(final Metadata meta, final int posIndex)
+				throws FormatException
+			{
+				try {
+					final Position p = meta.getPositions().get(posIndex);
+					final ImageMetadata ms = meta.get(posIndex);
+					final BrowsableLocation parent = p.metadataFile.parent();
+
+					log().info("Finding image file names");
+
+					// find the name of a TIFF file
+					p.tiffs = new ArrayList<>();
+
+					buildTIFFListMV2(meta, posIndex, p.metadataFile.sibling("img"), 0);
+					// build list of TIFF files
 
-					buildTIFFListMV2(meta, posIndex, p.metadataFile.sibling("img"));
-					// build list of TIFF files
-					
 					if (p.tiffs.size() == 0) {
 						log().info("Failed to generate tif file names");
 					}
@@ -521,23 +1300,33 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 				}
 		}
 
-		private void parsePositionMV1(final String jsonData, final Metadata meta,
-				final int posIndex) throws IOException, FormatException
+		/**
+		 * @param resume If true, continues after the last complete plane block of
+		 *          an earlier parse of a live position.
+		 */
+		private void parsePositionMV1(final MetadataTokenizer st, final Metadata meta,
+				final int posIndex, final MetaTable table, final boolean resume)
+				throws IOException, FormatException
 			{
 				final Position p = meta.getPositions().get(posIndex);
 				final ImageMetadata ms = meta.get(posIndex);
 				final BrowsableLocation metadataFile = p.metadataFile;
 			
-			boolean firstKeyFrame = true;
+			boolean firstKeyFrame = !resume;
 
-			log().info("Populating metadata - Micromanager 1.4");
-
-			final List<Double> stamps = new ArrayList<>();
-			p.voltage = new ArrayList<>();
+			if (!resume) {
+				log().info("Populating metadata - Micromanager 1.4");
+				p.voltage = new double[0];
+				p.blockIndex = new PlaneBlockIndex();
+			}
 
-			final StringTokenizer st = new StringTokenizer(jsonData, "\n");
 			final int[] slice = new int[3];
+
+			final PlanePropertyDispatcher dispatcher = createDispatcher(p, ms,
+				slice, false);
 			while (st.hasMoreTokens()) {
+				// everything before the next token has been applied
+				p.parsedLength = st.position();
 				String token = st.nextToken().trim();
 				final boolean open = token.contains("[");
 				boolean closed = token.contains("]");
@@ -559,7 +1348,6 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 							valueBuffer.append(token);
 						}
 						value = valueBuffer.toString();
-						value = value.replaceAll("\n", "");
 					}
 					if (value == null) continue;
 
@@ -572,11 +1360,11 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 						continue;
 					}
 					value = value.substring(0, value.length() - 1);
-					value = value.replaceAll("\"", "");
+					value = stripQuotes(value);
 					if (value.endsWith(",")) value =
 						value.substring(0, value.length() - 1);
 					if (!token.startsWith("\"FrameKey"))
-						meta.getTable().put(key, value);
+						table.put(key, value);
 					if (key.equals("UUID")) {
 						p.UUID = value;
 					} else if (key.equals("Channels")) {
@@ -585,7 +1373,7 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 					else if (key.equals("ChNames")) {
 						p.channels = value.split(",");
 						for (int q = 0; q < p.channels.length; q++) {
-							p.channels[q] = p.channels[q].replaceAll("\"", "").trim();
+							p.channels[q] = stripQuotes(p.channels[q]).trim();
 						}
 					}
 					else if (key.equals("Frames")) {
@@ -595,10 +1383,10 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 						ms.setAxisLength(Axes.Z, Integer.parseInt(value));
 					}
 					else if (key.equals("PixelSize_um")) {
-						p.pixelSize = new Double(value);
+						p.pixelSize = Double.parseDouble(value);
 					}
 					else if (key.equals("z-step_um")) {
-						p.sliceThickness = new Double(value);
+						p.sliceThickness = Double.parseDouble(value);
 					}
 					else if (key.equals("Time")) {
 						p.time = value;
@@ -607,11 +1395,7 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 						p.comment = value;
 					}
 					else if (key.equals("FileName") && metadataFile != null) {
-						final Location file = metadataFile.sibling(value);
-						p.locationMap.put(new Index(slice), file);
-						if (p.baseTiff == null) {
-							p.baseTiff = file;
-						}
+						p.putFileName(ms, slice, value, false);
 					}
 					else if (key.equals("Width")) {
 						ms.setAxisLength(Axes.X, Integer.parseInt(value));
@@ -642,18 +1426,8 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 				}
 
 				if (token.startsWith("\"FrameKey")) {
-					if (firstKeyFrame && prefService.getBoolean(MarsMicromanagerFormat.class, "CheckZvsTIME", true) &&  ms.getAxisLength(Axes.TIME) < ms.getAxisLength(Axes.Z)) {
-						log().info("Z > T and check is turned on. Swapping Z and T!");
-						
-						//Z is larger than TIME. Let's swap them!!
-						long frames = ms.getAxisLength(Axes.Z);
-						long sizeZ = ms.getAxisLength(Axes.TIME);
-						
-						ms.setAxisLength(Axes.TIME, frames);
-						ms.setAxisLength(Axes.Z, sizeZ);
-						swapZandTime = true;
-						firstKeyFrame = false;
-					}
+					final long blockOffset = st.tokenOffset();
+					if (firstKeyFrame && checkZvsTime(p, ms)) firstKeyFrame = false;
 					
 					int dash = token.indexOf("-") + 1;
 					int nextDash = token.indexOf("-", dash);
@@ -665,124 +1439,28 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 					slice[0] =
 						Integer.parseInt(token.substring(dash, token.indexOf("\"", dash)));
 
-					token = st.nextToken().trim();
-					String key = "", value = "";
-					boolean valueArray = false;
-					int nestedCount = 0;
-					
-					if (swapZandTime) {
+					if (p.swapZandTime) {
 						int theT = slice[2];
 						int theZ = slice[0];
 						
 						slice[2] = theZ;
 						slice[0] = theT;
 					}
-					
-					HashMap<String, String> planeMetaTable = new HashMap<String, String>();
-					
-					while (!token.startsWith("}") || nestedCount > 0) {
-
-						if (token.trim().endsWith("{")) {
-							nestedCount++;
-							token = st.nextToken().trim();
-							continue;
-						}
-						else if (token.trim().startsWith("}")) {
-							nestedCount--;
-							token = st.nextToken().trim();
-							continue;
-						}
-
-						if (valueArray) {
-							if (token.trim().equals("],")) {
-								valueArray = false;
-							}
-							else {
-								value += token.trim().replaceAll("\"", "");
-								token = st.nextToken().trim();
-								continue;
-							}
-						}
-						else {
-							final int colon = token.indexOf(":");
-							key = token.substring(1, colon).trim();
-							value = token.substring(colon + 1, token.length() - 1).trim();
-
-							key = key.replaceAll("\"", "");
-							value = value.replaceAll("\"", "");
 
-							if (token.trim().endsWith("[")) {
-								valueArray = true;
-								token = st.nextToken().trim();
-								continue;
-							}
-						}
-
-						//meta.getTable().put(key, value);
-						
-						planeMetaTable.put(key, value);
-
-						if (key.equals("Exposure-ms")) {
-							final double t = Double.parseDouble(value);
-							p.exposureTime = new Double(t / 1000);
-						}
-						else if (key.equals("ElapsedTime-ms")) {
-							final double t = Double.parseDouble(value);
-							stamps.add(new Double(t / 1000));
-						}
-						else if (key.equals("Core-Camera")) p.cameraRef = value;
-						else if (key.equals(p.cameraRef + "-Binning")) {
-							if (value.contains("x")) p.binning = value;
-							else p.binning = value + "x" + value;
-						}
-						else if (key.equals(p.cameraRef + "-CameraID")) p.detectorID =
-							value;
-						else if (key.equals(p.cameraRef + "-CameraName")) {
-							p.detectorModel = value;
-						}
-						else if (key.equals(p.cameraRef + "-Gain")) {
-							try {
-								p.gain = (int) Double.parseDouble(value);
-							} catch (NumberFormatException e) {
-								p.gain = -1;
-							}
-						}
-						else if (key.equals(p.cameraRef + "-Name")) {
-							p.detectorManufacturer = value;
-						}
-						else if (key.equals(p.cameraRef + "-Temperature")) {
-							p.temperature = Double.parseDouble(value);
-						}
-						else if (key.equals(p.cameraRef + "-CCDMode")) {
-							p.cameraMode = value;
-						}
-						else if (key.equals(p.cameraRef + "-Exposure")) {
-							final double t = Double.parseDouble(value);
-							p.exposureTime = new Double(t / 1000);
-						}
-						else if (key.startsWith("DAC-") && key.endsWith("-Volts")) {
-							p.voltage.add(new Double(value));
-						}
-						else if (key.equals("FileName") && metadataFile != null) {
-							final Location file = metadataFile.sibling(value);
-							p.locationMap.put(new Index(slice), file);
-							if (p.baseTiff == null) {
-								p.baseTiff = file;
-							}
-						}
+					// the last block of a live position may still be being written
+					if (!readPlaneBlock(st, dispatcher, p.live, false)) break;
 
-						token = st.nextToken().trim();
-					}
-					
-					//meta.getTable().put("MPlane-" + posIndex + "-" + slice[0] + "-" + slice[1] + "-" + slice[2], planeMetaTable);
-					p.putPlaneMap("MPlane-" + posIndex + "-" + slice[0] + "-" + slice[1] + "-" + slice[2], planeMetaTable);
+					final int slot = putBlock(p, slice, blockOffset, (int) (st
+						.position() - blockOffset));
+					setTime(p, slot, dispatcher);
+					p.parsedLength = st.position();
 				}
 			}
 
-			p.timestamps = stamps.toArray(new Double[stamps.size()]);
-			Arrays.sort(p.timestamps);
+			p.timeline = null;
+			p.acquired = null;
 
-			ms.setName(ms.getName() + " (Pos" + p.positionIndex + ")");
+			if (!resume) ms.setName(ms.getName() + " (Pos" + p.positionIndex + ")");
 
 			// look for the optional companion XML file
 
@@ -792,21 +1470,31 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 			//}
 		}
 		
-		private void parsePositionMV2(final String jsonData, final Metadata meta,
-				final int posIndex) throws IOException, FormatException
+		/**
+		 * @param resume If true, continues after the last complete plane block of
+		 *          an earlier parse of a live position.
+		 */
+		private void parsePositionMV2(final MetadataTokenizer st, final Metadata meta,
+				final int posIndex, final MetaTable table, final boolean resume)
+				throws IOException, FormatException
 			{
 			final Position p = meta.getPositions().get(posIndex);
 			final ImageMetadata ms = meta.get(posIndex);
-			final BrowsableLocation metadataFile = p.metadataFile;
-
-			log().info("Populating metadata - Micromanager 2.0");
 
-			final List<Double> stamps = new ArrayList<>();
-			p.voltage = new ArrayList<>();
+			if (!resume) {
+				log().info("Populating metadata - Micromanager 2.0");
+				p.voltage = new double[0];
+				p.blockIndex = new PlaneBlockIndex();
+			}
 
-			final StringTokenizer st = new StringTokenizer(jsonData, "\n");
 			final int[] slice = new int[3];
+
+			final PlanePropertyDispatcher dispatcher = createDispatcher(p, ms,
+				slice, true);
+			final BrowsableLocation metadataFile = p.metadataFile;
 			while (st.hasMoreTokens()) {
+				// everything before the next token has been applied
+				p.parsedLength = st.position();
 				String token = st.nextToken().trim();
 				final boolean open = token.contains("[");
 				boolean closed = token.contains("]");
@@ -828,7 +1516,6 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 							valueBuffer.append(token);
 						}
 						value = valueBuffer.toString();
-						value = value.replaceAll("\n", "");
 					}
 					if (value == null) continue;
 
@@ -842,12 +1529,12 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 					}
 					//if (value.length() > 1)
 					//	value = value.substring(0, value.length() - 1);
-					value = value.replaceAll("\"", "");
+					value = stripQuotes(value);
 					if (value.endsWith(",")) value =
 						value.substring(0, value.length() - 1);
 					
 					if (!token.startsWith("\"Coords-") && !token.startsWith("\"Metadata-"))
-						meta.getTable().put(key, value);
+						table.put(key, value);
 					
 					if (key.equals("UUID")) {
 						p.UUID = value;
@@ -857,7 +1544,7 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 					else if (key.equals("ChNames")) {
 						p.channels = value.split(",");
 						for (int q = 0; q < p.channels.length; q++) {
-							p.channels[q] = p.channels[q].replaceAll("\"", "").trim();
+							p.channels[q] = stripQuotes(p.channels[q]).trim();
 						}
 					}
 					else if (key.equals("Frames")) {
@@ -870,10 +1557,10 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 						ms.setAxisLength(Axes.Z, Integer.parseInt(value));
 					}
 					else if (key.equals("PixelSize_um")) {
-						p.pixelSize = new Double(value);
+						p.pixelSize = Double.parseDouble(value);
 					}
 					else if (key.equals("z-step_um")) {
-						p.sliceThickness = new Double(value);
+						p.sliceThickness = Double.parseDouble(value);
 					}
 					else if (key.equals("Time")) {
 						p.time = value;
@@ -882,11 +1569,7 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 						p.comment = value;
 					}
 					else if (key.equals("FileName") && metadataFile != null) {
-						final Location file = metadataFile.sibling(value);
-						p.locationMap.put(new Index(slice), file);
-						if (p.baseTiff == null) {
-							p.baseTiff = file;
-						}
+						p.putFileName(ms, slice, value, true);
 					}
 					else if (key.equals("Width") && Integer.parseInt(value) > 0) {
 						ms.setAxisLength(Axes.X, Integer.parseInt(value));
@@ -928,7 +1611,7 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 								propVal = propVal.substring(propVal.indexOf(":") + 1).trim();
 								//if (propVal.length() > 1)
 								//	propVal = propVal.substring(0, propVal.length() - 1);
-								propVal = propVal.replaceAll("\"", "");
+								propVal = stripQuotes(propVal);
 								if (propVal.endsWith(",")) propVal =
 									propVal.substring(0, propVal.length() - 1);
 								
@@ -947,6 +1630,7 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 				}
 				
 				if (token.startsWith("\"Coords-") || token.startsWith("\"Metadata-")) {
+					final long blockOffset = st.tokenOffset();
 
 					//slice[2] = time
 					//slice[1] = channel
@@ -970,151 +1654,26 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 					nextUnderscore = imgFileString.indexOf(".", zIndex);
 					slice[0] = Integer.parseInt(imgFileString.substring(zIndex, nextUnderscore));
 
-					token = st.nextToken().trim();
-					String key = "", value = "";
-					boolean valueArray = false;
-					int nestedCount = 0;
-					
-					HashMap<String, String> planeMetaTable = new HashMap<String, String>();
-					
-					while (!token.startsWith("}") || nestedCount > 0) {
-						if (token.equals("\"UserData\": {")) {
-							token = st.nextToken().trim();
-							while (!token.startsWith("}")) {
-								key = token.substring(1, token.indexOf(":") - 1);
-								//skip past type token
-								st.nextToken();
-								
-								//get scalar
-								token = st.nextToken().trim();
-								value = token.substring(token.indexOf(":") + 3, token.length() - 1);
-								
-								//meta.getTable().put(key, value);
-								
-								planeMetaTable.put(key, value);
-								
-								if (key.equals("Core-Camera")) p.cameraRef = value;
-								else if (key.equals(p.cameraRef + "-Binning")) {
-									if (value.contains("x")) p.binning = value;
-									else p.binning = value + "x" + value;
-								}
-								else if (key.equals(p.cameraRef + "-CameraID")) p.detectorID =
-									value;
-								else if (key.equals(p.cameraRef + "-CameraName")) {
-									p.detectorModel = value;
-								}
-								else if (key.equals(p.cameraRef + "-Gain")) {
-									try {
-										p.gain = (int) Double.parseDouble(value);
-									} catch (NumberFormatException e) {
-										p.gain = -1;
-									}
-								}
-								else if (key.equals(p.cameraRef + "-Name")) {
-									p.detectorManufacturer = value;
-								}
-								else if (key.equals(p.cameraRef + "-Temperature")) {
-									p.temperature = Double.parseDouble(value);
-								}
-								else if (key.equals(p.cameraRef + "-CCDMode")) {
-									p.cameraMode = value;
-								}
-								else if (key.equals(p.cameraRef + "-Exposure")) {
-									final double t = Double.parseDouble(value);
-									p.exposureTime = new Double(t / 1000);
-								}
-								else if (key.startsWith("DAC-") && key.endsWith("-Volts")) {
-									p.voltage.add(new Double(value));
-								}
-								
-								//Skip past closing bracket
-								st.nextToken();
-								
-								token = st.nextToken().trim();
-							}
-							token = st.nextToken().trim();
-						} else if (token.trim().endsWith("{")) {
-							nestedCount++;
-							token = st.nextToken().trim();
-							continue;
-						}
-						else if (token.trim().startsWith("}")) {
-							nestedCount--;
-							token = st.nextToken().trim();
-							continue;
-						}
-
-						if (valueArray) {
-							if (token.trim().equals("],")) {
-								valueArray = false;
-							}
-							else {
-								value += token.trim().replaceAll("\"", "");
-								token = st.nextToken().trim();
-								continue;
-							}
-						}
-						else {
-							final int colon = token.indexOf(":");
-							key = token.substring(1, colon).trim();
-							value = token.substring(colon + 1, token.length()).trim();
-							if (value.endsWith(",")) value =
-									value.substring(0, value.length() - 1);
-
-							key = key.replaceAll("\"", "");
-							value = value.replaceAll("\"", "");
-
-							if (token.trim().endsWith("[")) {
-								valueArray = true;
-								token = st.nextToken().trim();
-								continue;
-							}
-						}
-
-						//meta.getTable().put(key, value);
-						
-						planeMetaTable.put(key, value);
-
-						if (key.equals("Exposure-ms")) {
-							final double t = Double.parseDouble(value);
-							p.exposureTime = new Double(t / 1000);
-						}
-						else if (key.equals("ElapsedTime-ms")) {
-							final double t = Double.parseDouble(value);
-							stamps.add(new Double(t / 1000));
-						} 
-						else if (key.equals("FileName") && metadataFile != null) {
-							final Location file = metadataFile.sibling(value);
-							p.locationMap.put(new Index(slice), file);
-							if (p.baseTiff == null) {
-								p.baseTiff = file;
-							}
-						}
-						else if (key.equals("Width") && Integer.parseInt(value) > 0) {
-								ms.setAxisLength(Axes.X, Integer.parseInt(value));
-						}
-						else if (key.equals("Height") && Integer.parseInt(value) > 0) {
-								ms.setAxisLength(Axes.Y, Integer.parseInt(value));
-						}
-						else if (key.equals("PositionIndex")) {
-							p.positionIndex = Integer.parseInt(value);
-						}
-						else if (key.equals("UUID") && p.UUID == null) {
-							p.UUID = value;
-						}
-
-						token = st.nextToken().trim();
+					// the last block of a live position may still be being written
+					if (!readPlaneBlock(st, dispatcher, p.live, true)) break;
+
+					// Coords and Metadata blocks share a plane, the last one wins
+					final int slot = putBlock(p, slice, blockOffset, (int) (st
+						.position() - blockOffset));
+					setTime(p, slot, dispatcher);
+					if (p.live) {
+						// a live plane may have been read before its Metadata block arrived
+						p.planeMetadata.removeRow(slot);
+						p.firstChangedSlot = Math.min(p.firstChangedSlot, slot);
 					}
-					
-					//meta.getTable().put("MPlane-" + posIndex + "-" + slice[0] + "-" + slice[1] + "-" + slice[2], planeMetaTable);
-					p.putPlaneMap("MPlane-" + posIndex + "-" + slice[0] + "-" + slice[1] + "-" + slice[2], planeMetaTable);
+					p.parsedLength = st.position();
 				}
 			}
 
-			p.timestamps = stamps.toArray(new Double[stamps.size()]);
-			Arrays.sort(p.timestamps);
+			p.timeline = null;
+			p.acquired = null;
 			
-			ms.setName(ms.getName() + " (Pos" + p.positionIndex + ")");
+			if (!resume) ms.setName(ms.getName() + " (Pos" + p.positionIndex + ")");
 
 			// look for the optional companion XML file
 			//p.xmlFile = p.metadataFile.sibling(XML);
@@ -1124,139 +1683,447 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		}
 
 		/**
-		 * Populate the list of TIFF files using the given file name as a pattern.
+		 * Creates the dispatcher for the per-plane properties of a position.
+		 * Elapsed times are held until {@link #setTime} and file names are
+		 * recorded for the plane
+		 * given by slice, which the caller updates for each block.
 		 */
-		private void buildTIFFListMV1(final Metadata meta, final int posIndex,
-			final Location baseTiff) throws IOException
+		private static PlanePropertyDispatcher createDispatcher(final Position p,
+			final ImageMetadata ms, final int[] slice,
+			final boolean mv2)
 		{
-			log().info("Building list of TIFFs");
-			final Position p = meta.getPositions().get(posIndex);
-			
-			final String[] blocks = baseTiff.getName().split("_");
-			final StringBuilder filename = new StringBuilder();
-			for (int t = 0; t < meta.get(posIndex).getAxisLength(Axes.TIME); t++) {
-				for (int c = 0; c < meta.get(posIndex).getAxisLength(Axes.CHANNEL); c++)
-				{
-					for (int z = 0; z < meta.get(posIndex).getAxisLength(Axes.Z); z++) {
-						filename.append(blocks[0]);
-						filename.append("_");
-
-						if (swapZandTime) {
-							int zeros = blocks[1].length() - String.valueOf(z).length();
-							for (int q = 0; q < zeros; q++) {
-								filename.append("0");
-							}
-							filename.append(z);
-							filename.append("_");
-	
-							String channel = p.channels[c];
-							filename.append(channel);
-							filename.append("_");
-	
-							zeros = blocks[3].length() - String.valueOf(t).length() - 4;
-							for (int q = 0; q < zeros; q++) {
-								filename.append("0");
-							}
-							filename.append(t);
-							filename.append(".tif");
-						} else {
-							int zeros = blocks[1].length() - String.valueOf(t).length();
-							for (int q = 0; q < zeros; q++) {
-								filename.append("0");
-							}
-							filename.append(t);
-							filename.append("_");
-	
-							String channel = p.channels[c];
-							//if (channel.contains("-")) {
-							//	channel = channel.substring(0, channel.indexOf("-"));
-							//}
-							filename.append(channel);
-							filename.append("_");
-	
-							zeros = blocks[3].length() - String.valueOf(z).length() - 4;
-							for (int q = 0; q < zeros; q++) {
-								filename.append("0");
-							}
-							filename.append(z);
-							filename.append(".tif");
-						}
-
-						p.tiffs.add(p.metadataFile.sibling(filename.toString()));
-						filename.delete(0, filename.length());
-					}
-				} 
+			final BrowsableLocation metadataFile = p.metadataFile;
+			final PlanePropertyDispatcher dispatcher = new PlanePropertyDispatcher(p,
+				mv2);
+			dispatcher.on("Exposure-ms", value -> dispatcher.setExposure(Double
+				.parseDouble(value)));
+			dispatcher.on("ElapsedTime-ms", value -> dispatcher.elapsedTime = Double
+				.parseDouble(value) / 1000);
+			if (metadataFile != null) dispatcher.on("FileName", value -> p
+				.putFileName(ms, slice, value, mv2));
+			if (mv2) {
+				dispatcher.on("Width", value -> {
+					final int width = Integer.parseInt(value);
+					if (width > 0) ms.setAxisLength(Axes.X, width);
+				});
+				dispatcher.on("Height", value -> {
+					final int height = Integer.parseInt(value);
+					if (height > 0) ms.setAxisLength(Axes.Y, height);
+				});
+				dispatcher.on("PositionIndex", value -> p.positionIndex = Integer
+					.parseInt(value));
+				dispatcher.on("UUID", value -> {
+					if (p.UUID == null) p.UUID = value;
+				});
 			}
+			// resuming a live position, the camera was seen in an earlier block
+			if (p.cameraRef != null) dispatcher.setCamera(p.cameraRef);
+			return dispatcher;
 		}
-		
+
 		/**
-		 * Populate the list of TIFF files using the given file name as a pattern.
+		 * Records the block of the plane given by slice in the block index.
+		 *
+		 * @return The slot of the plane.
+		 * @throws FormatException If the plane is out of the range of the block
+		 *           index.
 		 */
-		private void buildTIFFListMV2(final Metadata meta, final int posIndex,
-			final Location baseTiff) throws IOException
+		private static int putBlock(final Position p, final int[] slice,
+			final long offset, final int length) throws FormatException
 		{
-			log().info("Building list of TIFFs");
-			final Position p = meta.getPositions().get(posIndex);
-			
-			final String[] blocks = baseTiff.getName().split("_");
-			final StringBuilder filename = new StringBuilder();
-			for (int t = 0; t < meta.get(posIndex).getAxisLength(Axes.TIME); t++) {
-				for (int c = 0; c < meta.get(posIndex).getAxisLength(Axes.CHANNEL); c++)
-				{
-					for (int z = 0; z < meta.get(posIndex).getAxisLength(Axes.Z); z++) {
-						filename.append(blocks[0]);
-						filename.append("_");
-
-						filename.append("channel");
-						int zeros = 3 - String.valueOf(c).length();
-						for (int q = 0; q < zeros; q++) {
-							filename.append("0");
-						}
-						filename.append(c);
-						filename.append("_");
-
-						filename.append("position");
-						zeros = 3 - String.valueOf(p.positionIndex).length();
-						for (int q = 0; q < zeros; q++) {
-							filename.append("0");
-						}
-						filename.append(p.positionIndex);
-						filename.append("_");
-						
-						filename.append("time");
-						zeros = 9 - String.valueOf(t).length();
-						for (int q = 0; q < zeros; q++) {
-							filename.append("0");
-						}
-						filename.append(t);
-						filename.append("_");
-						
-						filename.append("z");
-						zeros = 3 - String.valueOf(z).length();
-						for (int q = 0; q < zeros; q++) {
-							filename.append("0");
-						}
-						filename.append(z);
-						filename.append(".tif");
-
-						p.tiffs.add(p.metadataFile.sibling(filename.toString()));
-						filename.delete(0, filename.length());
-					}
-				} 
+			try {
+				return p.blockIndex.put(slice[0], slice[1], slice[2], offset, length);
+			}
+			catch (final IllegalArgumentException e) {
+				throw new FormatException(e.getMessage(), e);
 			}
 		}
 
 		/**
-		 * Parse metadata values from the Acqusition.xml file.
+		 * Records the elapsed time of the block just read for its slot. A block
+		 * without a time, such as the Coords block of MM 2.0, keeps the time of
+		 * the other block of the plane.
 		 */
-		private void parseXMLFile(final Metadata meta, final int imageIndex)
-			throws IOException, FormatException
+		private static void setTime(final Position p, final int slot,
+			final PlanePropertyDispatcher dispatcher)
 		{
-			final Position p = meta.getPositions().get(imageIndex);
+			if (!Double.isNaN(dispatcher.elapsedTime)) {
+				p.blockIndex.setTime(slot, dispatcher.elapsedTime);
+				dispatcher.elapsedTime = Double.NaN;
+			}
+		}
 
-			try (DataHandle<Location> handle = dataHandleService.create(p.xmlFile)) {
-				final long len = handle.length();
-				if (len > Integer.MAX_VALUE) {
+		/**
+		 * Reads one plane block. For live positions the properties are held back
+		 * until the whole block was read, so a block that is cut off by the end
+		 * of the file has no effect and can be parsed again later.
+		 *
+		 * @return False if the block of a live position is not complete yet.
+		 */
+		private static boolean readPlaneBlock(final MetadataTokenizer st,
+			final PlanePropertyDispatcher dispatcher, final boolean live,
+			final boolean mv2) throws IOException
+		{
+			final PlanePropertyConsumer consumer = live ? new PendingBlock()
+				: dispatcher;
+			try {
+				if (mv2) readPlaneBlockMV2(st, consumer);
+				else readPlaneBlockMV1(st, consumer);
+			}
+			catch (final EOFException e) {
+				if (!live) throw e;
+				return false;
+			}
+			if (live) ((PendingBlock) consumer).replay(dispatcher);
+			return true;
+		}
+
+		/** Properties of a plane block that has not been applied yet. */
+		private static final class PendingBlock implements PlanePropertyConsumer {
+
+			private final List<String> keys = new ArrayList<>();
+
+			private final List<String> values = new ArrayList<>();
+
+			private final BitSet userData = new BitSet();
+
+			@Override
+			public void accept(final String key, final String value,
+				final boolean inUserData)
+			{
+				if (inUserData) userData.set(keys.size());
+				keys.add(key);
+				values.add(value);
+			}
+
+			private void replay(final PlanePropertyConsumer consumer)
+				throws IOException
+			{
+				for (int i = 0; i < keys.size(); i++)
+					consumer.accept(keys.get(i), values.get(i), userData.get(i));
+			}
+		}
+
+		/** Handles the value of one per-plane property. */
+		private interface PropertyHandler {
+
+			void handle(String value) throws IOException;
+		}
+
+		/**
+		 * Dispatch table for the properties of per-plane metadata blocks, built
+		 * once per position. Camera specific keys such as "Andor-Binning" are
+		 * registered when the Core-Camera property is seen, rather than
+		 * concatenating the camera name for each property of each plane. For MM
+		 * 2.0 the camera and DAC properties are only taken from UserData.
+		 */
+		private static final class PlanePropertyDispatcher implements
+			PlanePropertyConsumer
+		{
+
+			private static final String[] CAMERA_SUFFIXES = { "-Binning",
+				"-CameraID", "-CameraName", "-Gain", "-Name", "-Temperature",
+				"-CCDMode", "-Exposure" };
+
+			private final Position p;
+
+			private final Map<String, PropertyHandler> handlers = new HashMap<>();
+
+			/** Table holding the camera and DAC handlers. */
+			private final Map<String, PropertyHandler> cameraHandlers;
+
+			private final List<String> cameraKeys = new ArrayList<>();
+
+			/** ElapsedTime-ms of the current block in seconds, NaN if not seen. */
+			private double elapsedTime = Double.NaN;
+
+			private PlanePropertyDispatcher(final Position p,
+				final boolean cameraInUserData)
+			{
+				this.p = p;
+				cameraHandlers = cameraInUserData ? new HashMap<>() : handlers;
+				cameraHandlers.put("Core-Camera", this::setCamera);
+			}
+
+			private void on(final String key, final PropertyHandler handler) {
+				handlers.put(key, handler);
+			}
+
+			@Override
+			public void accept(final String key, final String value,
+				final boolean userData) throws IOException
+			{
+				final Map<String, PropertyHandler> table = userData ? cameraHandlers
+					: handlers;
+				final PropertyHandler handler = table.get(key);
+				if (handler != null) handler.handle(value);
+				else if (table == cameraHandlers && key.startsWith("DAC-") && key
+					.endsWith("-Volts"))
+				{
+					p.addVoltage(Double.parseDouble(value));
+				}
+			}
+
+			/** Sets the exposure in ms, only boxing when the value changes. */
+			private void setExposure(final double exposureMs) {
+				final double exposure = exposureMs / 1000;
+				if (p.exposureTime == null || p.exposureTime != exposure) {
+					p.exposureTime = exposure;
+				}
+			}
+
+			private void setCamera(final String camera) {
+				if (camera.equals(p.cameraRef) && !cameraKeys.isEmpty()) return;
+				p.cameraRef = camera;
+				for (final String key : cameraKeys)
+					cameraHandlers.remove(key);
+				cameraKeys.clear();
+
+				for (final String suffix : CAMERA_SUFFIXES) {
+					final String key = camera + suffix;
+					if (cameraHandlers.putIfAbsent(key, cameraHandler(suffix)) == null) {
+						cameraKeys.add(key);
+					}
+				}
+			}
+
+			private PropertyHandler cameraHandler(final String suffix) {
+				switch (suffix) {
+					case "-Binning":
+						return value -> p.binning = value.contains("x") ? value : value +
+							"x" + value;
+					case "-CameraID":
+						return value -> p.detectorID = value;
+					case "-CameraName":
+						return value -> p.detectorModel = value;
+					case "-Gain":
+						return value -> {
+							try {
+								p.gain = (int) Double.parseDouble(value);
+							}
+							catch (final NumberFormatException e) {
+								p.gain = -1;
+							}
+						};
+					case "-Name":
+						return value -> p.detectorManufacturer = value;
+					case "-Temperature":
+						return value -> p.temperature = Double.parseDouble(value);
+					case "-CCDMode":
+						return value -> p.cameraMode = value;
+					default:
+						return value -> setExposure(Double.parseDouble(value));
+				}
+			}
+		}
+
+		/**
+		 * Walks the properties of a MM 1.4 FrameKey block. The tokenizer must be
+		 * positioned just after the FrameKey line. On return the closing line of
+		 * the block has been consumed.
+		 */
+		static void readPlaneBlockMV1(final MetadataTokenizer st,
+			final PlanePropertyConsumer consumer) throws IOException
+		{
+			String token = st.nextToken().trim();
+			String key = "", value = "";
+			boolean valueArray = false;
+			int nestedCount = 0;
+
+			while (!token.startsWith("}") || nestedCount > 0) {
+
+				if (token.endsWith("{")) {
+					nestedCount++;
+					token = st.nextToken().trim();
+					continue;
+				}
+				else if (token.startsWith("}")) {
+					nestedCount--;
+					token = st.nextToken().trim();
+					continue;
+				}
+
+				if (valueArray) {
+					if (token.equals("],")) {
+						valueArray = false;
+					}
+					else {
+						value += stripQuotes(token);
+						token = st.nextToken().trim();
+						continue;
+					}
+				}
+				else {
+					final int colon = token.indexOf(":");
+					key = token.substring(1, colon).trim();
+					value = token.substring(colon + 1, token.length() - 1).trim();
+
+					key = stripQuotes(key);
+					value = stripQuotes(value);
+
+					if (token.endsWith("[")) {
+						valueArray = true;
+						token = st.nextToken().trim();
+						continue;
+					}
+				}
+
+				consumer.accept(key, value, false);
+
+				token = st.nextToken().trim();
+			}
+		}
+
+		/**
+		 * Walks the properties of a MM 2.0 Coords or Metadata block. The tokenizer
+		 * must be positioned just after the block header. On return the closing
+		 * line of the block has been consumed.
+		 */
+		static void readPlaneBlockMV2(final MetadataTokenizer st,
+			final PlanePropertyConsumer consumer) throws IOException
+		{
+			String token = st.nextToken().trim();
+			String key = "", value = "";
+			boolean valueArray = false;
+			int nestedCount = 0;
+
+			while (!token.startsWith("}") || nestedCount > 0) {
+				if (token.equals("\"UserData\": {")) {
+					token = st.nextToken().trim();
+					while (!token.startsWith("}")) {
+						key = token.substring(1, token.indexOf(":") - 1);
+						//skip past type token
+						st.nextToken();
+
+						//get scalar
+						token = st.nextToken().trim();
+						value = token.substring(token.indexOf(":") + 3, token.length() - 1);
+
+						consumer.accept(key, value, true);
+
+						//Skip past closing bracket
+						st.nextToken();
+
+						token = st.nextToken().trim();
+					}
+					token = st.nextToken().trim();
+				} else if (token.endsWith("{")) {
+					nestedCount++;
+					token = st.nextToken().trim();
+					continue;
+				}
+				else if (token.startsWith("}")) {
+					nestedCount--;
+					token = st.nextToken().trim();
+					continue;
+				}
+
+				if (valueArray) {
+					if (token.equals("],")) {
+						valueArray = false;
+					}
+					else {
+						value += stripQuotes(token);
+						token = st.nextToken().trim();
+						continue;
+					}
+				}
+				else {
+					final int colon = token.indexOf(":");
+					key = token.substring(1, colon).trim();
+					value = token.substring(colon + 1, token.length()).trim();
+					if (value.endsWith(",")) value =
+							value.substring(0, value.length() - 1);
+
+					key = stripQuotes(key);
+					value = stripQuotes(value);
+
+					if (token.endsWith("[")) {
+						valueArray = true;
+						token = st.nextToken().trim();
+						continue;
+					}
+				}
+
+				consumer.accept(key, value, false);
+
+				token = st.nextToken().trim();
+			}
+		}
+
+		/**
+		 * Removes all double quotes. Cheaper than a regex replace for the common
+		 * case of values that contain no quotes at all.
+		 */
+		static String stripQuotes(final String value) {
+			final int first = value.indexOf('"');
+			if (first < 0) return value;
+			final StringBuilder sb = new StringBuilder(value.length());
+			sb.append(value, 0, first);
+			for (int i = first + 1; i < value.length(); i++) {
+				final char ch = value.charAt(i);
+				if (ch != '"') sb.append(ch);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Populate the list of TIFF files using the given file name as a pattern,
+		 * extending it by the files of frames firstT and later. File names are
+		 * only built when they are used, see {@link GeneratedTIFFList}.
+		 */
+		private void buildTIFFListMV1(final Metadata meta, final int posIndex,
+			final Location baseTiff, final long firstT) throws IOException
+		{
+			log().info("Building list of TIFFs");
+			final Position p = meta.getPositions().get(posIndex);
+			final ImageMetadata ms = meta.get(posIndex);
+
+			if (firstT == 0 || !(p.tiffs instanceof GeneratedTIFFList)) {
+				final int sizeC = (int) ms.getAxisLength(Axes.CHANNEL);
+				// without a name for each channel there is no pattern to follow
+				if (p.channels == null || p.channels.length < sizeC) return;
+				p.tiffs = GeneratedTIFFList.mv1(p.metadataFile, baseTiff.getName(),
+					p.channels, p.swapZandTime, (int) ms.getAxisLength(Axes.Z), sizeC);
+			}
+			// published as a new list, readers may hold on to the old one
+			p.tiffs = ((GeneratedTIFFList) p.tiffs).withFrames((int) ms
+				.getAxisLength(Axes.TIME));
+		}
+
+		/**
+		 * Populate the list of TIFF files using the given file name as a pattern,
+		 * extending it by the files of frames firstT and later. File names are
+		 * only built when they are used, see {@link GeneratedTIFFList}.
+		 */
+		private void buildTIFFListMV2(final Metadata meta, final int posIndex,
+			final Location baseTiff, final long firstT) throws IOException
+		{
+			log().info("Building list of TIFFs");
+			final Position p = meta.getPositions().get(posIndex);
+			final ImageMetadata ms = meta.get(posIndex);
+
+			if (firstT == 0 || !(p.tiffs instanceof GeneratedTIFFList)) {
+				p.tiffs = GeneratedTIFFList.mv2(p.metadataFile, baseTiff.getName()
+					.split("_")[0], p.positionIndex, (int) ms.getAxisLength(Axes.Z),
+					(int) ms.getAxisLength(Axes.CHANNEL));
+			}
+			// published as a new list, readers may hold on to the old one
+			p.tiffs = ((GeneratedTIFFList) p.tiffs).withFrames((int) ms
+				.getAxisLength(Axes.TIME));
+		}
+
+		/**
+		 * Parse metadata values from the Acqusition.xml file.
+		 */
+		private void parseXMLFile(final Metadata meta, final int imageIndex)
+			throws IOException, FormatException
+		{
+			final Position p = meta.getPositions().get(imageIndex);
+
+			try (DataHandle<Location> handle = dataHandleService.create(p.xmlFile)) {
+				final long len = handle.length();
+				if (len > Integer.MAX_VALUE) {
 					throw new FormatException("MetadataFile at: " + p.xmlFile.getURI() +
 						" is too large to be parsed!");
 				}
@@ -1302,8 +2169,35 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 		@Parameter
 		private DataHandleService dataHandleService;
 
-		/** Helper reader for TIFF files. */
-		private MinimalTIFFFormat.Reader<?> tiffReader;
+		/**
+		 * Helper readers for the TIFF files, see {@link #TIFF_CACHE_SIZE}. Each
+		 * call of {@link #openPlane} checks out its own helper, so planes can be
+		 * read by several threads at once with the shared, immutable
+		 * {@link Metadata}.
+		 */
+		private TIFFReaderCache tiffReaders;
+
+		/**
+		 * Open TIFF files read without the TIFF reader: multi-page files, see
+		 * {@link MMStackIndex} and {@link NDTiffIndex}, and single plane files
+		 * read through their {@link TIFFTemplate} or {@link StripLayout}.
+		 */
+		private TiffParserCache stackFiles;
+
+		/** Reads planes ahead, see {@link #PREFETCH_DEPTH}. */
+		private PlanePrefetcher prefetcher;
+
+		/** Mapped TIFF files, see {@link #MEMORY_MAP}. */
+		private MappedFileCache mappedFiles;
+
+		/** Recently read planes, see {@link #PLANE_CACHE_SIZE}. */
+		private PlaneCache planeCache;
+
+		/**
+		 * Header layout of the first file read of each image, null if the files
+		 * of the image are always read with the TIFF parser.
+		 */
+		private final Map<Integer, TIFFTemplate> templates = new HashMap<>();
 
 		// -- AbstractReader API Methods --
 
@@ -1312,205 +2206,1408 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 			return new String[] { FormatTools.LM_DOMAIN };
 		}
 
-		// -- Reader API methods --
+		// -- Reader API methods --
+
+		@Override
+		public void setMetadata(final Metadata meta) throws IOException {
+			closePrefetcher();
+			synchronized (this) {
+				templates.clear();
+				if (mappedFiles != null) mappedFiles.clear();
+				if (planeCache != null) planeCache.clear();
+			}
+			if (tiffReaders != null) tiffReaders.clear();
+			if (stackFiles != null) stackFiles.clear();
+			super.setMetadata(meta);
+		}
+
+		@Override
+		public ByteArrayPlane openPlane(final int imageIndex, final long planeIndex,
+			final ByteArrayPlane plane, final Interval bounds,
+			final SCIFIOConfig config) throws FormatException, IOException
+		{
+			final Metadata meta = getMetadata();
+			final byte[] buf = plane.getBytes();
+			FormatTools.checkPlaneForReading(meta, imageIndex, planeIndex, buf.length,
+				bounds);
+
+			final boolean wholePlane = isWholePlane(meta.get(imageIndex), bounds);
+			final PlaneCache cache = wholePlane ? getPlaneCache(config) : null;
+			if (cache != null && cache.get(imageIndex, planeIndex, buf)) return plane;
+
+			final PlanePrefetcher prefetcher = wholePlane ? getPrefetcher(config)
+				: null;
+			final byte[] bytes = prefetcher == null ? null : prefetcher.take(
+				imageIndex, planeIndex, meta.get(imageIndex).getPlaneCount());
+			if (bytes != null && bytes.length == buf.length) {
+				System.arraycopy(bytes, 0, buf, 0, bytes.length);
+				if (cache != null) cache.put(imageIndex, planeIndex, buf, meta.get(
+					imageIndex).getBitsPerPixel() / 8);
+				return plane;
+			}
+			final ByteArrayPlane read = readPlane(imageIndex, planeIndex, plane,
+				bounds, config);
+			if (read == null) return plane;
+			if (cache != null) cache.put(imageIndex, planeIndex, read.getBytes(),
+				meta.get(imageIndex).getBitsPerPixel() / 8);
+			return read;
+		}
+
+		/**
+		 * Reads several planes of an image into the given planes, planes[i]
+		 * receiving plane planeIndices[i]. The planes are read in the order of
+		 * their files on disk rather than the order requested, split over
+		 * {@link #BATCH_THREADS} threads, so that reading a series of planes from
+		 * spinning disks or network storage becomes a sequential scan.
+		 */
+		public void openPlanes(final int imageIndex, final long[] planeIndices,
+			final ByteArrayPlane[] planes, final Interval bounds,
+			final SCIFIOConfig config) throws FormatException, IOException
+		{
+			if (planes.length != planeIndices.length) {
+				throw new IllegalArgumentException("Expected " + planeIndices.length +
+					" planes but got " + planes.length);
+			}
+			readInFileOrder(imageIndex, planeIndices, config, (request,
+				scratch) -> openPlane(imageIndex, planeIndices[request],
+					planes[request], bounds, config));
+		}
+
+		/**
+		 * Reads several planes of an image into one contiguous buffer, plane
+		 * planeIndices[i] starting at i times the plane size, see
+		 * {@link #openPlanes(int, long[], ByteArrayPlane[], Interval, SCIFIOConfig)}.
+		 *
+		 * @param buffer Buffer for all planes, or null to allocate one.
+		 * @return The buffer.
+		 */
+		public byte[] openPlanes(final int imageIndex, final long[] planeIndices,
+			final byte[] buffer, final Interval bounds, final SCIFIOConfig config)
+			throws FormatException, IOException
+		{
+			final int planeSize = createPlane(bounds).getBytes().length;
+			final long size = (long) planeSize * planeIndices.length;
+			if (size > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Planes do not fit in one array");
+			}
+			final byte[] bytes = buffer == null ? new byte[(int) size] : buffer;
+			if (bytes.length < size) {
+				throw new IllegalArgumentException("Buffer holds " + bytes.length +
+					" bytes, need " + size);
+			}
+			readInFileOrder(imageIndex, planeIndices, config, (request, scratch) -> {
+				final ByteArrayPlane plane = openPlane(imageIndex,
+					planeIndices[request], scratch.get(bounds), bounds, config);
+				System.arraycopy(plane.getBytes(), 0, bytes, request * planeSize,
+					planeSize);
+			});
+			return bytes;
+		}
+
+		/** Reads one requested plane, see {@link #readInFileOrder}. */
+		private interface PlaneRequest {
+
+			void read(int request, ScratchPlane scratch) throws FormatException,
+				IOException;
+		}
+
+		/** Plane reused by the requests handled by one thread. */
+		private final class ScratchPlane {
+
+			private ByteArrayPlane plane;
+
+			private ByteArrayPlane get(final Interval bounds) {
+				if (plane == null) plane = createPlane(bounds);
+				return plane;
+			}
+		}
+
+		/**
+		 * Sorts the requests by the position of their file in the acquisition
+		 * order, which is the order in which the files were written, and reads
+		 * them in that order. With more than one thread, each thread reads its
+		 * own run of consecutive files.
+		 */
+		private void readInFileOrder(final int imageIndex,
+			final long[] planeIndices, final SCIFIOConfig config,
+			final PlaneRequest request) throws FormatException, IOException
+		{
+			final Metadata meta = getMetadata();
+			final Position p = meta.getPositions().get(imageIndex);
+			final long[] keys = new long[planeIndices.length];
+			for (int i = 0; i < planeIndices.length; i++) {
+				final int file = p.getFileIndex(meta, imageIndex, planeIndices[i]);
+				// planes without a file last, keeping the requested order
+				keys[i] = ((file < 0 ? Integer.MAX_VALUE : (long) file) << 32) | i;
+			}
+			Arrays.sort(keys);
+
+			final int threads = Math.min(planeIndices.length, getConfigInt(config,
+				BATCH_THREADS, 1));
+			if (threads <= 1) {
+				final ScratchPlane scratch = new ScratchPlane();
+				for (final long key : keys)
+					request.read((int) key, scratch);
+				return;
+			}
+			final ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				final List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < threads; t++) {
+					final int from = (int) ((long) keys.length * t / threads);
+					final int to = (int) ((long) keys.length * (t + 1) / threads);
+					futures.add(executor.submit(() -> {
+						final ScratchPlane scratch = new ScratchPlane();
+						for (int k = from; k < to; k++)
+							request.read((int) keys[k], scratch);
+						return null;
+					}));
+				}
+				for (final Future<?> future : futures) {
+					waitFor(future, "reading planes");
+				}
+			}
+			finally {
+				// no interrupts, they would close the file channels of pooled readers
+				executor.shutdown();
+			}
+		}
+
+		/**
+		 * Reads a plane from its TIFF file, bypassing the prefetcher.
+		 *
+		 * @return The plane, or null if there is no file to read it from yet, in
+		 *         which case the plane is left as it is or, for a plane skipped by
+		 *         a sparse acquisition, cleared.
+		 */
+		private ByteArrayPlane readPlane(final int imageIndex,
+			final long planeIndex, final ByteArrayPlane plane, final Interval bounds,
+			final SCIFIOConfig config) throws FormatException, IOException
+		{
+			final Metadata meta = getMetadata();
+			final byte[] buf = plane.getBytes();
+			final Position p = meta.getPositions().get(imageIndex);
+			final Location file = p.getExistingLocation(dataHandleService, meta,
+				imageIndex, planeIndex);
+			if (file == null && p.blockIndex.size() > 0 && !p.hasPlane(meta,
+				imageIndex, planeIndex))
+			{
+				// neither a block nor a file, skipped by a sparse acquisition
+				Arrays.fill(buf, (byte) 0);
+				return null;
+			}
+
+			if (file != null) {
+				final long pixelOffset = p.getPixelOffset(planeIndex);
+				if (pixelOffset >= 0) {
+					readNDTiffPlane(imageIndex, file, pixelOffset, buf, bounds, config);
+					return plane;
+				}
+				final long ifdOffset = p.getIFDOffset(meta, imageIndex, planeIndex);
+				if (ifdOffset >= 0) {
+					readStrips(imageIndex, file, ifdOffset, buf, bounds, config);
+					return plane;
+				}
+				final TIFFTemplate template = getTemplate(imageIndex, file);
+				final MappedFileCache mappedFiles = getMappedFiles(config);
+				final ByteBuffer mapped = template == null || mappedFiles == null
+					? null : mappedFiles.get(file);
+				if (mapped != null) {
+					if (template.matches(mapped)) {
+						template.read(mapped, buf, bounds);
+						return plane;
+					}
+				}
+				else if (template != null) {
+					final TiffParserCache parsers = getStackFiles(config);
+					final TiffParser parser = parsers.acquire(file);
+					try {
+						if (template.matches(parser.getStream())) {
+							template.read(parser.getStream(), buf, bounds);
+							return plane;
+						}
+					}
+					finally {
+						parsers.release(parser);
+					}
+				}
+				// a file that does not match the template still has its own strips,
+				// only files that are not stored as plain rows, for example because
+				// they are compressed, need the TIFF reader
+				if (readStrips(imageIndex, file, -1, buf, bounds, config)) return plane;
+				final TIFFReaderCache readers = getTIFFReaders(config);
+				final MinimalTIFFFormat.Reader<?> tiff = readers.acquire(file, config);
+				try {
+					return tiff.openPlane(imageIndex, 0, plane, bounds);
+				}
+				finally {
+					readers.release(tiff);
+				}
+			}
+			//log().warn("File for image #" + imageIndex + " (" + file +
+			//		") is missing or cannot be opened.");
+			return null;
+		}
+
+		@Override
+		public void close(final boolean fileOnly) throws IOException {
+			super.close(fileOnly);
+			closePrefetcher();
+			synchronized (this) {
+				if (planeCache != null) planeCache.clear();
+			}
+			if (tiffReaders != null) tiffReaders.clear();
+			if (stackFiles != null) stackFiles.clear();
+		}
+
+		@Override
+		public long getOptimalTileWidth(final int imageIndex) {
+			final MinimalTIFFFormat.Reader<?> tiff = setupReader(imageIndex);
+			if (tiff == null) return super.getOptimalTileWidth(imageIndex);
+			try {
+				return tiff.getOptimalTileWidth(imageIndex);
+			}
+			finally {
+				releaseReader(tiff);
+			}
+		}
+
+		@Override
+		public long getOptimalTileHeight(final int imageIndex) {
+			final MinimalTIFFFormat.Reader<?> tiff = setupReader(imageIndex);
+			if (tiff == null) return super.getOptimalTileHeight(imageIndex);
+			try {
+				return tiff.getOptimalTileHeight(imageIndex);
+			}
+			finally {
+				releaseReader(tiff);
+			}
+		}
+
+		/**
+		 * Opens an image as a lazily loaded ImgLib2 image over all its axes, in
+		 * the order of the {@link ImageMetadata}, X, Y, Z, CHANNEL and TIME for
+		 * Micro-Manager positions. The image is cut into cells of the optimal
+		 * tile size within one plane, which are read with
+		 * {@link #openPlane(int, long, ByteArrayPlane, Interval, SCIFIOConfig)}
+		 * when first accessed and kept in a cache bounded by
+		 * {@link #CELL_CACHE_SIZE}. The reader has to stay open while the image
+		 * is in use.
+		 *
+		 * @param config Configuration for reading the cells, also consulted for
+		 *          {@link #CELL_CACHE_SIZE}.
+		 * @return The image, of the ImgLib2 type matching the pixel type.
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public <T extends NativeType<T>> CachedCellImg<T, ?> openCellImg(
+			final int imageIndex, final SCIFIOConfig config) throws FormatException
+		{
+			final ImageMetadata ms = getMetadata().get(imageIndex);
+			final long[] dimensions = ms.getAxesLengths();
+			final int planarAxes = ms.getAxesLengthsPlanar().length;
+			final int[] cellDimensions = new int[dimensions.length];
+			Arrays.fill(cellDimensions, 1);
+			final long tileWidth = getOptimalTileWidth(imageIndex);
+			final long tileHeight = getOptimalTileHeight(imageIndex);
+			for (int d = 0; d < planarAxes; d++) {
+				long size = dimensions[d];
+				if (d == 0 && tileWidth > 0) size = Math.min(size, tileWidth);
+				if (d == 1 && tileHeight > 0) size = Math.min(size, tileHeight);
+				cellDimensions[d] = (int) size;
+			}
+
+			final int cells = getConfigInt(config, CELL_CACHE_SIZE, 0);
+			final ReadOnlyCachedCellImgOptions options = ReadOnlyCachedCellImgOptions
+				.options().cellDimensions(cellDimensions);
+			if (cells > 0) options.cacheType(CacheType.BOUNDED).maxCacheSize(cells);
+			else options.cacheType(CacheType.SOFTREF);
+
+			final NativeType type = PlaneCellLoader.createType(ms.getPixelType());
+			return new ReadOnlyCachedCellImgFactory(options).create(dimensions, type,
+				new PlaneCellLoader(this, imageIndex, planarAxes, ms
+					.getAxesLengthsNonPlanar(), ms.isLittleEndian(), config));
+		}
+
+		/**
+		 * Gives direct access to the pixels of a plane in its memory mapped TIFF
+		 * file, see {@link #MEMORY_MAP}. Nothing is copied, the view is backed by
+		 * the page cache.
+		 *
+		 * @return A read-only view of the pixel bytes of the whole plane, in the
+		 *         byte order of the file, or null if the plane cannot be mapped,
+		 *         in which case it has to be read with
+		 *         {@link #openPlane(int, long)}.
+		 */
+		public ByteBuffer openPlaneView(final int imageIndex,
+			final long planeIndex, final SCIFIOConfig config) throws IOException
+		{
+			final MappedFileCache mappedFiles = getMappedFiles(config);
+			if (mappedFiles == null) return null;
+			final Metadata meta = getMetadata();
+			final Position p = meta.getPositions().get(imageIndex);
+			final Location file = p.getExistingLocation(dataHandleService, meta,
+				imageIndex, planeIndex);
+			if (file == null) return null;
+			final long pixelOffset = p.getPixelOffset(planeIndex);
+			if (pixelOffset >= 0) {
+				final ImageMetadata ms = meta.get(imageIndex);
+				final long length = ms.getAxisLength(Axes.X) * ms.getAxisLength(
+					Axes.Y) * FormatTools.getBytesPerPixel(ms.getPixelType());
+				final ByteBuffer mapped = mappedFiles.get(file);
+				return mapped == null || mapped.capacity() < pixelOffset + length
+					? null : TIFFTemplate.view(mapped, pixelOffset, length, p
+						.isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			}
+			// MMStack files hold many planes and have no header template
+			if (p.stackIndex != null) return null;
+			final TIFFTemplate template = getTemplate(imageIndex, file);
+			if (template == null) return null;
+			final ByteBuffer mapped = mappedFiles.get(file);
+			return mapped != null && template.matches(mapped) ? template.view(
+				mapped) : null;
+		}
+
+		/**
+		 * @return The number of planes served from the plane cache, see
+		 *         {@link #PLANE_CACHE_SIZE}.
+		 */
+		public synchronized long getPlaneCacheHits() {
+			return planeCache == null ? 0 : planeCache.getHits();
+		}
+
+		/** @return The number of planes that were not in the plane cache. */
+		public synchronized long getPlaneCacheMisses() {
+			return planeCache == null ? 0 : planeCache.getMisses();
+		}
+
+		/**
+		 * @return The number of planes dropped from the plane cache to stay
+		 *         within its size.
+		 */
+		public synchronized long getPlaneCacheEvictions() {
+			return planeCache == null ? 0 : planeCache.getEvictions();
+		}
+
+		/** @return The number of bytes held by the plane cache. */
+		public synchronized long getPlaneCacheBytes() {
+			return planeCache == null ? 0 : planeCache.getSize();
+		}
+
+		/**
+		 * @return The number of planes whose TIFF file was already open, see
+		 *         {@link #TIFF_CACHE_SIZE}.
+		 */
+		public long getTIFFCacheHits() {
+			return tiffReaders == null ? 0 : tiffReaders.getHits();
+		}
+
+		/**
+		 * @return The number of planes for which a TIFF file had to be opened
+		 *         and its header parsed.
+		 */
+		public long getTIFFCacheMisses() {
+			return tiffReaders == null ? 0 : tiffReaders.getMisses();
+		}
+
+		// -- Groupable API Methods --
+
+		@Override
+		public boolean hasCompanionFiles() {
+			return true;
+		}
+
+		// -- Helper methods --
+
+		/**
+		 * @return The prefetcher, created on the first call with a positive
+		 *         {@link #PREFETCH_DEPTH}, or null if read-ahead is off.
+		 */
+		private synchronized PlanePrefetcher getPrefetcher(
+			final SCIFIOConfig config)
+		{
+			if (prefetcher == null) {
+				final int depth = getConfigInt(config, PREFETCH_DEPTH, 0);
+				if (depth <= 0) return null;
+				prefetcher = new PlanePrefetcher((imageIndex, planeIndex) -> {
+					final Interval bounds = new FinalInterval(getMetadata().get(
+						imageIndex).getAxesLengthsPlanar());
+					final ByteArrayPlane plane = readPlane(imageIndex, planeIndex,
+						createPlane(bounds), bounds, config);
+					return plane == null ? null : plane.getBytes();
+				}, depth, getConfigInt(config, PREFETCH_THREADS,
+					DEFAULT_PREFETCH_THREADS));
+			}
+			return prefetcher;
+		}
+
+		/**
+		 * Reads a plane of an NDTiff file with a single seek to its pixels, from
+		 * the mapped file if {@link #MEMORY_MAP} is set.
+		 */
+		private void readNDTiffPlane(final int imageIndex, final Location file,
+			final long pixelOffset, final byte[] buf, final Interval bounds,
+			final SCIFIOConfig config) throws FormatException, IOException
+		{
+			final ImageMetadata ms = getMetadata().get(imageIndex);
+			final int width = (int) ms.getAxisLength(Axes.X);
+			final int bytesPerPixel = FormatTools.getBytesPerPixel(ms
+				.getPixelType());
+			final MappedFileCache mappedFiles = getMappedFiles(config);
+			final ByteBuffer mapped = mappedFiles == null ? null : mappedFiles.get(
+				file);
+			if (mapped != null) {
+				TIFFTemplate.readPixels(mapped, pixelOffset, width, bytesPerPixel, buf,
+					bounds);
+				return;
+			}
+			final TiffParserCache parsers = getStackFiles(config);
+			final TiffParser parser = parsers.acquire(file);
+			try {
+				TIFFTemplate.readPixels(parser.getStream(), pixelOffset, width,
+					bytesPerPixel, buf, bounds);
+			}
+			finally {
+				parsers.release(parser);
+			}
+		}
+
+		/**
+		 * Reads the bounds of a plane by parsing only its own IFD, the first one
+		 * of the file if ifdOffset is negative. Uncompressed planes are read
+		 * through their {@link StripLayout}, so only the bytes of the requested
+		 * rows and columns are fetched.
+		 *
+		 * @return False if the plane is neither uncompressed nor in a multi-page
+		 *         file, in which case nothing was read.
+		 * @throws FormatException If the samples of a plane in a multi-page file
+		 *           are not the size of the pixel type of the image.
+		 */
+		private boolean readStrips(final int imageIndex, final Location file,
+			final long ifdOffset, final byte[] buf, final Interval bounds,
+			final SCIFIOConfig config) throws FormatException, IOException
+		{
+			final int bytesPerPixel = FormatTools.getBytesPerPixel(getMetadata().get(
+				imageIndex).getPixelType());
+			final TiffParserCache parsers = getStackFiles(config);
+			final TiffParser parser = parsers.acquire(file);
+			try {
+				final IFD ifd = ifdOffset < 0 ? parser.getFirstIFD() : parser.getIFD(
+					ifdOffset);
+				if (ifd == null) {
+					throw new FormatException("No IFD at offset " + ifdOffset + " of " +
+						file);
+				}
+				parser.fillInIFD(ifd);
+				final StripLayout layout = StripLayout.create(ifd, bytesPerPixel);
+				if (layout != null && bounds.min(0) + bounds.dimension(0) <= layout
+					.getWidth() && bounds.min(1) + bounds.dimension(1) <= layout
+						.getHeight())
+				{
+					layout.read(parser.getStream(), buf, bounds);
+					return true;
+				}
+				if (ifdOffset < 0) return false;
+				if (ifd.getBytesPerSample()[0] != bytesPerPixel) {
+					throw new FormatException("Plane at IFD offset " + ifdOffset +
+						" of " + file + " has " + ifd.getBytesPerSample()[0] +
+						" bytes per sample, expected " + bytesPerPixel);
+				}
+				parser.getSamples(ifd, buf, bounds.min(0), bounds.min(1), bounds
+					.dimension(0), bounds.dimension(1));
+				return true;
+			}
+			finally {
+				parsers.release(parser);
+			}
+		}
+
+		private synchronized TiffParserCache getStackFiles(
+			final SCIFIOConfig config)
+		{
+			if (stackFiles == null) {
+				stackFiles = new TiffParserCache(getContext(), dataHandleService,
+					getConfigInt(config, TIFF_CACHE_SIZE, DEFAULT_TIFF_CACHE_SIZE));
+			}
+			return stackFiles;
+		}
+
+		/**
+		 * @return The header template of the image, parsed from the given file
+		 *         if the image has none yet, or null if the files of the image
+		 *         have no fast path.
+		 */
+		private synchronized TIFFTemplate getTemplate(final int imageIndex,
+			final Location file)
+		{
+			if (templates.containsKey(imageIndex)) return templates.get(imageIndex);
+			TIFFTemplate template = null;
+			try (DataHandle<Location> handle = dataHandleService.create(file)) {
+				template = TIFFTemplate.create(getContext(), handle);
+				final ImageMetadata ms = getMetadata().get(imageIndex);
+				if (template != null && (template.getWidth() != ms.getAxisLength(
+					Axes.X) || template.getHeight() != ms.getAxisLength(Axes.Y) ||
+					template.getBytesPerPixel() != FormatTools.getBytesPerPixel(ms
+						.getPixelType())))
+				{
+					template = null;
+				}
+			}
+			catch (final IOException | FormatException e) {
+				log().debug("No header template for " + file, e);
+			}
+			templates.put(imageIndex, template);
+			return template;
+		}
+
+		/**
+		 * @return The plane cache, created on the first call with a positive
+		 *         {@link #PLANE_CACHE_SIZE}, or null if planes are not cached.
+		 */
+		private synchronized PlaneCache getPlaneCache(final SCIFIOConfig config) {
+			if (planeCache == null) {
+				final int megabytes = getConfigInt(config, PLANE_CACHE_SIZE, 0);
+				if (megabytes <= 0) return null;
+				planeCache = new PlaneCache(megabytes * 1024L * 1024L,
+					getConfigBoolean(config, PLANE_CACHE_COMPRESSION, false),
+					getConfigBoolean(config, PLANE_CACHE_OFF_HEAP, false));
+			}
+			return planeCache;
+		}
+
+		/**
+		 * @return The mapped files, created on the first call with
+		 *         {@link #MEMORY_MAP} set, or null if files are not mapped.
+		 */
+		private synchronized MappedFileCache getMappedFiles(
+			final SCIFIOConfig config)
+		{
+			if (mappedFiles == null && getConfigBoolean(config, MEMORY_MAP, false)) {
+				mappedFiles = new MappedFileCache(getConfigInt(config, TIFF_CACHE_SIZE,
+					DEFAULT_TIFF_CACHE_SIZE));
+			}
+			return mappedFiles;
+		}
+
+		private synchronized void closePrefetcher() {
+			if (prefetcher != null) {
+				prefetcher.close();
+				prefetcher = null;
+			}
+		}
+
+		private static boolean isWholePlane(final ImageMetadata ms,
+			final Interval bounds)
+		{
+			final long[] lengths = ms.getAxesLengthsPlanar();
+			for (int d = 0; d < lengths.length; d++) {
+				if (bounds.min(d) != 0 || bounds.dimension(d) != lengths[d]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private synchronized TIFFReaderCache getTIFFReaders(
+			final SCIFIOConfig config)
+		{
+			if (tiffReaders == null) {
+				tiffReaders = new TIFFReaderCache(
+					() -> (MinimalTIFFFormat.Reader<?>) formatService.getFormatFromClass(
+						MinimalTIFFFormat.class).createReader(), getConfigInt(config,
+							TIFF_CACHE_SIZE, DEFAULT_TIFF_CACHE_SIZE));
+			}
+			return tiffReaders;
+		}
+
+		/**
+		 * @return The reader of the first plane of the image, which gives the
+		 *         tile layout of the whole image. It must be handed back with
+		 *         {@link #releaseReader}.
+		 */
+		private MinimalTIFFFormat.Reader<?> setupReader(final int imageIndex) {
+			try {
+				final Location file = getMetadata().getPositions().get(imageIndex)
+					.getExistingLocation(dataHandleService, getMetadata(), imageIndex, 0);
+
+				if (file != null) {
+					return getTIFFReaders(null).acquire(file, new SCIFIOConfig());
+				}
+				log().warn("File for image #" + imageIndex + " (" + file +
+					") is missing or cannot be opened.");
+			}
+			catch (final Exception e) {
+				log().debug("", e);
+			}
+			return null;
+		}
+
+		private void releaseReader(final MinimalTIFFFormat.Reader<?> tiff) {
+			try {
+				tiffReaders.release(tiff);
+			}
+			catch (final IOException e) {
+				log().debug("", e);
+			}
+		}
+
+	}
+
+	/**
+	 * Necessary dummy translator, so that a Micromanager-OMEXML translator can be
+	 * used
+	 */
+	@Plugin(type = Translator.class, priority = Priority.LOW)
+	public static class MicromanagerTranslator extends DefaultTranslator {
+
+		@Override
+		public Class<? extends io.scif.Metadata> source() {
+			return io.scif.Metadata.class;
+		}
+
+		@Override
+		public Class<? extends io.scif.Metadata> dest() {
+			return Metadata.class;
+		}
+	}
+
+	// -- Helper classes --
+
+	public static class Position {
+
+		public Location baseTiff;
+
+		/**
+		 * Files of the position. Like the other tables read per plane, it is only
+		 * replaced, never changed in place, while the position is locked, so
+		 * planes are looked up without taking the lock.
+		 */
+		public volatile List<Location> tiffs;
+
+		/**
+		 * File of each plane with a FileName entry that does not follow the
+		 * naming template, see {@link #putFileName}. Once {@link #planeFiles} is
+		 * built, only the entries naming another file than the one a
+		 * {@link GeneratedTIFFList} gives their plane are kept, the others are
+		 * moved to {@link #generatedPlanes}.
+		 */
+		public Map<Index, Location> locationMap = new HashMap<>();
+
+		/**
+		 * Planes whose FileName entry named the file the
+		 * {@link GeneratedTIFFList} gives them, or null if there are none.
+		 */
+		BitSet generatedPlanes;
+
+		/**
+		 * Naming template FileName entries are matched against while parsing,
+		 * null if the position has none or its names follow no template. Until
+		 * {@link #planeFiles} is built, the {@link #generatedPlanes} are plane
+		 * indices of this template.
+		 */
+		GeneratedTIFFList fileNames;
+
+		/**
+		 * Index into {@link #tiffs} for each plane index, -1 where no file is
+		 * known. Built once the TIFF list is known, see
+		 * {@link #buildPlaneFileTable(ImageMetadata)}.
+		 */
+		public volatile int[] planeFiles;
+
+		/**
+		 * True if {@link #planeFiles} was resolved directly from the files, by
+		 * an {@link NDTiffIndex} or a scan of the folder, and is never rebuilt.
+		 */
+		public boolean fixedPlaneFiles;
+
+		/**
+		 * Planes of a position saved as multi-page MMStack files, null if each
+		 * plane has its own file.
+		 */
+		public MMStackIndex stackIndex;
+
+		/**
+		 * IFD offset of each plane in its file, -1 where not known, or null if
+		 * each plane has its own file. Built together with {@link #planeFiles}.
+		 */
+		public volatile long[] ifdOffsets;
+
+		/**
+		 * Offset of the pixels of each plane in its file, -1 where the plane was
+		 * not acquired, or null if the position is not part of an NDTiff dataset.
+		 * Built from the {@link NDTiffIndex} together with {@link #planeFiles}.
+		 */
+		public volatile long[] pixelOffsets;
+
+		/** True if the pixels of an NDTiff position are little-endian. */
+		public boolean littleEndian;
+
+		/**
+		 * Files of {@link #tiffs} found by the last directory listing, see
+		 * {@link #fileExists(DataHandleService, int)}.
+		 */
+		private volatile BitTable existingFiles;
+		
+		/** Offsets of the per-plane metadata blocks in the metadata file. */
+		public PlaneBlockIndex blockIndex = new PlaneBlockIndex();
+
+		/**
+		 * Per-plane metadata that has been materialized, one row per
+		 * {@link #blockIndex} slot.
+		 */
+		public PlaneMetadataStore planeMetadata = new PlaneMetadataStore();
+
+		/** Re-reads per-plane metadata blocks on demand. */
+		PlaneMetadataReader planeReader;
+
+		public BrowsableLocation metadataFile;
+
+		public BrowsableLocation xmlFile;
+
+		public String[] channels;
+
+		public String comment, time;
+
+		public Double exposureTime, sliceThickness, pixelSize;
+
+		/** Elapsed time of each plane, see {@link #getTimeline(ImageMetadata)}. */
+		volatile PlaneTimeline timeline;
+
+		/**
+		 * Acquired planes, see {@link #getAcquiredPlanes(ImageMetadata)}. Reset
+		 * whenever blocks are parsed.
+		 */
+		volatile BitTable acquired;
+
+		/**
+		 * Z, C and T lengths of a live position as of its last update, see
+		 * {@link #getSizes(ImageMetadata)}. Null for other positions.
+		 */
+		private volatile long[] liveSizes;
+
+		public int gain;
+
+		public String binning, detectorID, detectorModel, detectorManufacturer;
+
+		public double temperature;
+		
+		public int positionIndex;
+
+		/**
+		 * DAC voltages in the order they were read, of which the first
+		 * {@link #voltageCount} are set, see {@link #addVoltage(double)}.
+		 */
+		public double[] voltage;
+
+		public int voltageCount;
+
+		public String cameraRef;
+
+		public String cameraMode;
+		
+		public String UUID;
+
+		/** True if Z and TIME were swapped because Z > T, see CheckZvsTIME. */
+		public boolean swapZandTime;
+
+		/** True if the position is still being acquired, see {@link #LIVE}. */
+		public boolean live;
+
+		/**
+		 * Offset in the metadata file just past the last complete plane block,
+		 * where parsing resumes for live positions.
+		 */
+		public long parsedLength;
+
+		/** Lowest block slot added or replaced by the current live update. */
+		int firstChangedSlot;
+
+		public Location getLocation(final Metadata meta, final int imageIndex,
+			final long planeIndex)
+		{
+			final int file = getFileIndex(meta, imageIndex, planeIndex);
+			return file < 0 ? null : tiffs.get(file);
+		}
+
+		/**
+		 * @return The index into {@link #tiffs} of the file holding the plane, or
+		 *         -1 if no file is known. Files are listed in acquisition order.
+		 */
+		public int getFileIndex(final Metadata meta, final int imageIndex,
+			final long planeIndex)
+		{
+			final long planeCount = getPlaneCount(meta.get(imageIndex));
+			int[] table = planeFiles;
+			if (table == null || table.length != planeCount ||
+				stackIndex != null && ifdOffsets == null)
+			{
+				synchronized (this) {
+					table = planeFiles;
+					if (table == null || table.length != getPlaneCount(meta.get(
+						imageIndex)) || stackIndex != null && ifdOffsets == null)
+					{
+						table = buildPlaneFileTable(meta.get(imageIndex));
+					}
+				}
+			}
+			if (planeIndex < 0 || planeIndex >= table.length) return -1;
+			return table[(int) planeIndex];
+		}
+
+		/**
+		 * @return The file of the plane, or null if no file is known or the file
+		 *         does not exist, see {@link #fileExists(DataHandleService, int)}.
+		 */
+		public Location getExistingLocation(
+			final DataHandleService dataHandleService, final Metadata meta,
+			final int imageIndex, final long planeIndex) throws IOException
+		{
+			final int file = getFileIndex(meta, imageIndex, planeIndex);
+			final List<Location> files = tiffs;
+			return fileExists(dataHandleService, files, file) ? files.get(file)
+				: null;
+		}
 
-		@Override
-		public void setMetadata(final Metadata meta) throws IOException {
-			tiffReader = null;
-			super.setMetadata(meta);
+		/**
+		 * Answers from an existence bitmap over {@link #tiffs}, built by listing
+		 * the directory of the files once instead of checking each file. The
+		 * bitmap is rebuilt when files are added to a live position, and can be
+		 * dropped with {@link #refreshFiles()} to pick up files written since.
+		 * The directories are listed without locking the position.
+		 *
+		 * @return True if the file with the given index into {@link #tiffs}
+		 *         exists.
+		 */
+		public boolean fileExists(final DataHandleService dataHandleService,
+			final int file) throws IOException
+		{
+			return fileExists(dataHandleService, tiffs, file);
 		}
 
-		@Override
-		public ByteArrayPlane openPlane(final int imageIndex, final long planeIndex,
-			final ByteArrayPlane plane, final Interval bounds,
-			final SCIFIOConfig config) throws FormatException, IOException
+		private boolean fileExists(final DataHandleService dataHandleService,
+			final List<Location> files, final int file) throws IOException
 		{
-			if (tiffReader == null) {
-				tiffReader = (MinimalTIFFFormat.Reader<?>) formatService
-					.getFormatFromClass(MinimalTIFFFormat.class).createReader();
+			if (files == null || file < 0 || file >= files.size()) return false;
+			BitTable existing = existingFiles;
+			if (existing == null || existing.size != files.size()) {
+				existing = new BitTable(listFiles(dataHandleService, files), files
+					.size());
+				existingFiles = existing;
 			}
+			return existing.bits.get(file);
+		}
 
-			final Metadata meta = getMetadata();
-			final byte[] buf = plane.getBytes();
-			FormatTools.checkPlaneForReading(meta, imageIndex, planeIndex, buf.length,
-				bounds);
-			
-			final Location file =
-					meta.getPositions().get(imageIndex).getLocation(meta, imageIndex,
-						planeIndex);
-			
-			if (file != null && dataHandleService.supports(file) &&
-					dataHandleService.exists(file)) {
-				tiffReader.setSource(file, config);
-				return tiffReader.openPlane(imageIndex, 0, plane, bounds);
+		/** @return The files of the list that exist. */
+		private BitSet listFiles(final DataHandleService dataHandleService,
+			final List<Location> files) throws IOException
+		{
+			final BitSet existing = new BitSet(files.size());
+			if (files instanceof GeneratedTIFFList) {
+				// all files are siblings of the metadata file, so only names are
+				// built
+				final GeneratedTIFFList generated = (GeneratedTIFFList) files;
+				final Location dir = metadataFile.parent();
+				final Set<String> names = dir == null ? null : DirectoryListing.list(
+					dir);
+				if (names != null) {
+					for (int i = 0; i < generated.size(); i++)
+						if (names.contains(generated.getName(i))) existing.set(i);
+					return existing;
+				}
 			}
-			//log().warn("File for image #" + imageIndex + " (" + file +
-			//		") is missing or cannot be opened.");
-			return plane;
+			final Map<Location, Set<String>> listings = new HashMap<>();
+			for (int i = 0; i < files.size(); i++) {
+				final Location tiff = files.get(i);
+				Set<String> names = null;
+				if (tiff instanceof BrowsableLocation) {
+					final Location dir = ((BrowsableLocation) tiff).parent();
+					if (dir != null) {
+						if (!listings.containsKey(dir)) listings.put(dir, DirectoryListing
+							.list(dir));
+						names = listings.get(dir);
+					}
+				}
+				if (names != null ? names.contains(tiff.getName())
+					: dataHandleService.supports(tiff) && dataHandleService.exists(
+						tiff)) existing.set(i);
+			}
+			return existing;
 		}
 
-		@Override
-		public void close(final boolean fileOnly) throws IOException {
-			super.close(fileOnly);
-			if (tiffReader != null) tiffReader.close(fileOnly);
+		/**
+		 * Forgets which files exist, so the directories are listed again on the
+		 * next query. Meant for live positions whose files are still being
+		 * written.
+		 */
+		public void refreshFiles() {
+			existingFiles = null;
 		}
 
-		@Override
-		public long getOptimalTileWidth(final int imageIndex) {
-			if (tiffReader == null || tiffReader.getCurrentLocation() == null) {
-				setupReader(imageIndex);
-			}
-			return tiffReader.getOptimalTileWidth(imageIndex);
+		/**
+		 * @return The offset of the pixels of the plane in its NDTiff file, or -1
+		 *         if the position is not part of an NDTiff dataset or the plane
+		 *         was not acquired.
+		 */
+		public long getPixelOffset(final long planeIndex) {
+			final long[] offsets = pixelOffsets;
+			if (offsets == null || planeIndex < 0 || planeIndex >= offsets.length)
+				return -1;
+			return offsets[(int) planeIndex];
 		}
 
-		@Override
-		public long getOptimalTileHeight(final int imageIndex) {
-			if (tiffReader == null || tiffReader.getCurrentLocation() == null) {
-				setupReader(imageIndex);
-			}
-			return tiffReader.getOptimalTileHeight(imageIndex);
+		/**
+		 * @return True if the pixels of the position are stored little-endian,
+		 *         which is only the case for multi-page files.
+		 */
+		public boolean isLittleEndian() {
+			return stackIndex != null ? stackIndex.isLittleEndian() : littleEndian;
 		}
 
-		// -- Groupable API Methods --
-
-		@Override
-		public boolean hasCompanionFiles() {
-			return true;
+		/**
+		 * @return The offset of the IFD of the plane in its MMStack file, or -1
+		 *         if the plane has its own file or no file is known.
+		 */
+		public long getIFDOffset(final Metadata meta, final int imageIndex,
+			final long planeIndex)
+		{
+			// the offsets are published before the file table they belong to
+			if (getFileIndex(meta, imageIndex, planeIndex) < 0) return -1;
+			final long[] offsets = ifdOffsets;
+			if (offsets == null || planeIndex >= offsets.length) return -1;
+			return offsets[(int) planeIndex];
 		}
 
-		// -- Helper methods --
-
-		private boolean setupReader(final int imageIndex) {
-			try {
-				final Location file = getMetadata().getPositions().get(imageIndex)
-					.getLocation(getMetadata(), imageIndex, 0);
-
-				if (file != null && dataHandleService.supports(file) &&
-					dataHandleService.exists(file))
+		/**
+		 * Resolves the file of every plane once, by matching the FileName of each
+		 * {@link #locationMap} entry against {@link #tiffs}. Planes without an
+		 * entry map onto a {@link GeneratedTIFFList} in order, as do all planes
+		 * when there are no FileName entries and the {@link #generatedPlanes}. Entries that agree with a
+		 * {@link GeneratedTIFFList} are dropped afterwards. Planes of MMStack
+		 * files are looked up in the {@link #stackIndex} instead.
+		 *
+		 * @return The new {@link #planeFiles} table.
+		 */
+		public synchronized int[] buildPlaneFileTable(final ImageMetadata ms) {
+			if (fixedPlaneFiles && planeFiles != null) return planeFiles;
+			final long sizeZ = ms.getAxisLength(Axes.Z);
+			final long sizeC = ms.getAxisLength(Axes.CHANNEL);
+			final long sizeT = ms.getAxisLength(Axes.TIME);
+			final int[] table = new int[Math.toIntExact(sizeZ * sizeC * sizeT)];
+			Arrays.fill(table, -1);
+
+			checkFileNames();
+			if (stackIndex != null) {
+				final long[] offsets = new long[table.length];
+				stackIndex.fill(table, offsets, sizeZ, sizeC, sizeT, swapZandTime);
+				ifdOffsets = offsets;
+			}
+			else if (tiffs != null) {
+				// planes without a FileName entry, for example because their block
+				// is missing or not written yet, are in the file the template names
+				if (tiffs instanceof GeneratedTIFFList || locationMap.isEmpty() &&
+					generatedPlanes == null)
 				{
-					if (tiffReader == null) {
-						tiffReader = (MinimalTIFFFormat.Reader<?>) formatService
-							.getFormatFromClass(MinimalTIFFFormat.class).createReader();
+					for (int i = 0; i < Math.min(table.length, tiffs.size()); i++)
+						table[i] = i;
+				}
+				else if (generatedPlanes != null) {
+					for (int i = generatedPlanes.nextSetBit(0); i >= 0 && i < Math.min(
+						table.length, tiffs.size()); i = generatedPlanes.nextSetBit(i + 1))
+						table[i] = i;
+				}
+				if (!locationMap.isEmpty()) {
+					final Map<String, Integer> tiffIndex = tiffs instanceof GeneratedTIFFList
+						? null : new HashMap<>();
+					if (tiffIndex != null) {
+						for (int i = 0; i < tiffs.size(); i++)
+							tiffIndex.putIfAbsent(tiffs.get(i).getName(), i);
 					}
-					tiffReader.setSource(file);
-					return true;
+
+					for (final Map.Entry<Index, Location> entry : locationMap
+						.entrySet())
+					{
+						final Index key = entry.getKey();
+						if (key.z >= sizeZ || key.c >= sizeC || key.t >= sizeT) continue;
+						final int plane = (int) (key.z + sizeZ * (key.c + sizeC * key.t));
+						if (tiffIndex == null) {
+							table[plane] = ((GeneratedTIFFList) tiffs).indexOfName(entry
+								.getValue().getName());
+						}
+						else {
+							final Integer file = tiffIndex.get(entry.getValue().getName());
+							if (file != null) table[plane] = file;
+						}
+					}
+					pruneLocationMap(sizeZ, sizeC, table);
 				}
-				log().warn("File for image #" + imageIndex + " (" + file +
-					") is missing or cannot be opened.");
 			}
-			catch (final Exception e) {
-				log().debug("", e);
-			}
-			return false;
+			planeFiles = table;
+			return table;
 		}
 
-	}
+		/** Appends a DAC voltage, growing {@link #voltage} as needed. */
+		void addVoltage(final double volts) {
+			if (voltageCount == voltage.length) voltage = Arrays.copyOf(voltage,
+				Math.max(8, 2 * voltageCount));
+			voltage[voltageCount++] = volts;
+		}
 
-	/**
-	 * Necessary dummy translator, so that a Micromanager-OMEXML translator can be
-	 * used
-	 */
-	@Plugin(type = Translator.class, priority = Priority.LOW)
-	public static class MicromanagerTranslator extends DefaultTranslator {
+		/**
+		 * Records the FileName entry of the plane given by zct while parsing. The
+		 * name is resolved against the naming template of the position, built
+		 * from the first entry, and only names off the template are kept as a
+		 * {@link Location}.
+		 */
+		void putFileName(final ImageMetadata ms, final int[] zct,
+			final String name, final boolean mv2) throws IOException
+		{
+			if (baseTiff == null) {
+				baseTiff = metadataFile.sibling(name);
+				fileNames = createFileNames(ms, name, mv2);
+			}
+			else if (mv2 && fileNames != null && fileNames
+				.getPositionIndex() != positionIndex)
+			{
+				// the PositionIndex of the first plane came after its FileName
+				forgetFileNames();
+				fileNames = createFileNames(ms, name, true);
+			}
 
-		@Override
-		public Class<? extends io.scif.Metadata> source() {
-			return io.scif.Metadata.class;
+			int plane = -1;
+			GeneratedTIFFList names = fileNames;
+			if (names != null && zct[0] < names.getSizeZ() && zct[1] < names
+				.getSizeC())
+			{
+				if (zct[2] >= names.getFrames()) {
+					names = names.withFrames(zct[2] + 1);
+					fileNames = names;
+				}
+				plane = zct[0] + names.getSizeZ() * (zct[1] + names.getSizeC() *
+					zct[2]);
+				if (names.indexOfName(name) == plane) {
+					if (generatedPlanes == null) generatedPlanes = new BitSet();
+					generatedPlanes.set(plane);
+					// a live block may replace an earlier one
+					if (!locationMap.isEmpty()) locationMap.remove(new Index(zct));
+					return;
+				}
+			}
+			locationMap.put(new Index(zct), metadataFile.sibling(name));
+			if (plane >= 0 && generatedPlanes != null) generatedPlanes.clear(plane);
 		}
 
-		@Override
-		public Class<? extends io.scif.Metadata> dest() {
-			return Metadata.class;
+		/**
+		 * @return The template names are resolved against while parsing, the
+		 *         same {@link #buildPlaneFileTable} is going to use, or null if
+		 *         the names of the position follow none.
+		 */
+		private GeneratedTIFFList createFileNames(final ImageMetadata ms,
+			final String name, final boolean mv2)
+		{
+			final int sizeZ = (int) ms.getAxisLength(Axes.Z);
+			final int sizeC = (int) ms.getAxisLength(Axes.CHANNEL);
+			if (sizeZ <= 0 || sizeC <= 0 || MMStackIndex.isStackMetadata(
+				metadataFile.getName())) return null;
+			if (mv2) {
+				return GeneratedTIFFList.mv2(metadataFile, "img", positionIndex, sizeZ,
+					sizeC);
+			}
+			if (channels == null || channels.length < sizeC || name.split("_")
+				.length < 4) return null;
+			return GeneratedTIFFList.mv1(metadataFile, name, channels, swapZandTime,
+				sizeZ, sizeC);
 		}
-	}
-
-	// -- Helper classes --
-
-	public static class Position {
-
-		public Location baseTiff;
-
-		public List<Location> tiffs;
 
-		public Map<Index, Location> locationMap = new HashMap<>();
-		
-		public Map<String, Map<String, String>> planeToMetaTable = new HashMap<String, Map<String, String>>();
-
-		public BrowsableLocation metadataFile;
-
-		public BrowsableLocation xmlFile;
-
-		public String[] channels;
-
-		public String comment, time;
-
-		public Double exposureTime, sliceThickness, pixelSize;
+		/**
+		 * Turns the {@link #generatedPlanes} matched while parsing back into
+		 * {@link #locationMap} entries, unless {@link #tiffs} names its files
+		 * like the template they were matched against.
+		 */
+		private void checkFileNames() {
+			if (fileNames == null || tiffs instanceof GeneratedTIFFList &&
+				((GeneratedTIFFList) tiffs).hasTemplateOf(fileNames)) return;
+			forgetFileNames();
+			fileNames = null;
+		}
 
-		public Double[] timestamps;
+		private void forgetFileNames() {
+			if (generatedPlanes == null) return;
+			final int sizeZ = fileNames.getSizeZ();
+			final int sizeC = fileNames.getSizeC();
+			for (int i = generatedPlanes.nextSetBit(0); i >= 0; i = generatedPlanes
+				.nextSetBit(i + 1))
+			{
+				locationMap.put(new Index(new int[] { i % sizeZ, i / sizeZ % sizeC, i /
+					sizeZ / sizeC }), fileNames.get(i));
+			}
+			generatedPlanes = null;
+		}
 
-		public int gain;
+		/**
+		 * Moves the {@link #locationMap} entries whose plane resolved to the file
+		 * a {@link GeneratedTIFFList} gives it anyway to {@link #generatedPlanes},
+		 * so that only FileName entries off the naming pattern stay in memory.
+		 */
+		private void pruneLocationMap(final long sizeZ, final long sizeC,
+			final int[] table)
+		{
+			if (!(tiffs instanceof GeneratedTIFFList)) return;
+			final Iterator<Map.Entry<Index, Location>> entries = locationMap
+				.entrySet().iterator();
+			while (entries.hasNext()) {
+				final Index key = entries.next().getKey();
+				final long plane = key.z + sizeZ * (key.c + sizeC * key.t);
+				if (plane < table.length && table[(int) plane] == plane) {
+					if (generatedPlanes == null) generatedPlanes = new BitSet(
+						table.length);
+					generatedPlanes.set((int) plane);
+					entries.remove();
+				}
+			}
+		}
 
-		public String binning, detectorID, detectorModel, detectorManufacturer;
+		/**
+		 * Extends {@link #planeFiles} after frames were appended to a live
+		 * position. Only the blocks from firstSlot on are looked at, so the cost
+		 * depends on the number of new or replaced planes.
+		 */
+		synchronized void appendPlaneFiles(final ImageMetadata ms,
+			final int firstSlot)
+		{
+			if (stackIndex != null) {
+				buildPlaneFileTable(ms);
+				return;
+			}
+			checkFileNames();
+			final long sizeZ = ms.getAxisLength(Axes.Z);
+			final long sizeC = ms.getAxisLength(Axes.CHANNEL);
+			final long sizeT = ms.getAxisLength(Axes.TIME);
+			final int planes = Math.toIntExact(sizeZ * sizeC * sizeT);
+			final int previous = planeFiles == null ? 0 : planeFiles.length;
+			final int[] table = planeFiles == null ? new int[planes] : Arrays.copyOf(
+				planeFiles, planes);
+			if (planes > previous) Arrays.fill(table, previous, planes, -1);
+
+			if (tiffs instanceof GeneratedTIFFList || locationMap.isEmpty() &&
+				generatedPlanes == null)
+			{
+				for (int i = previous; i < Math.min(planes, tiffs.size()); i++)
+					table[i] = i;
+			}
+			if (!locationMap.isEmpty() || generatedPlanes != null) {
+				Map<String, Integer> tiffIndex = null;
+				for (int slot = firstSlot; slot < blockIndex.size(); slot++) {
+					final int z = blockIndex.getZ(slot);
+					final int c = blockIndex.getC(slot);
+					final int t = blockIndex.getT(slot);
+					if (z >= sizeZ || c >= sizeC || t >= sizeT) continue;
+					final Location location = locationMap.get(new Index(new int[] { z, c,
+						t }));
+					final int plane = (int) (z + sizeZ * (c + sizeC * t));
+					if (location == null) {
+						if (generatedPlanes != null && generatedPlanes.get(plane) &&
+							plane < tiffs.size()) table[plane] = plane;
+						continue;
+					}
+					// TIFF lists are generated in plane order, so try that first
+					if (tiffs instanceof GeneratedTIFFList) {
+						table[plane] = ((GeneratedTIFFList) tiffs).indexOfName(location
+							.getName());
+						continue;
+					}
+					if (plane < tiffs.size() && tiffs.get(plane).getName().equals(
+						location.getName()))
+					{
+						table[plane] = plane;
+						continue;
+					}
+					if (tiffIndex == null) {
+						tiffIndex = new HashMap<>();
+						for (int i = 0; i < tiffs.size(); i++)
+							tiffIndex.putIfAbsent(tiffs.get(i).getName(), i);
+					}
+					final Integer file = tiffIndex.get(location.getName());
+					if (file != null) table[plane] = file;
+				}
+				pruneLocationMap(sizeZ, sizeC, table);
+			}
+			planeFiles = table;
+		}
 
-		public double temperature;
-		
-		public int positionIndex;
+		/**
+		 * @return The elapsed times of the planes, built from {@link #blockIndex}
+		 *         on first use and again when the plane count changed.
+		 */
+		public PlaneTimeline getTimeline(final ImageMetadata ms) {
+			PlaneTimeline built = timeline;
+			if (built == null || built.getPlaneCount() != getPlaneCount(ms)) {
+				synchronized (this) {
+					built = timeline;
+					final long[] sizes = getSizes(ms);
+					if (built == null || built.getPlaneCount() != sizes[0] * sizes[1] *
+						sizes[2])
+					{
+						built = PlaneTimeline.create(blockIndex, sizes[0], sizes[1],
+							sizes[2]);
+						timeline = built;
+					}
+				}
+			}
+			return built;
+		}
 
-		public List<Double> voltage;
+		/**
+		 * @return The Z, C and T lengths the tables of the position are built
+		 *         for. An update of a live position changes the axes of its
+		 *         {@link ImageMetadata} while it parses, so lookups use the
+		 *         lengths it published once it was done instead.
+		 */
+		long[] getSizes(final ImageMetadata ms) {
+			final long[] sizes = liveSizes;
+			if (sizes != null) return sizes;
+			return new long[] { ms.getAxisLength(Axes.Z), ms.getAxisLength(
+				Axes.CHANNEL), ms.getAxisLength(Axes.TIME) };
+		}
 
-		public String cameraRef;
+		private long getPlaneCount(final ImageMetadata ms) {
+			final long[] sizes = liveSizes;
+			return sizes == null ? ms.getPlaneCount() : sizes[0] * sizes[1] *
+				sizes[2];
+		}
 
-		public String cameraMode;
-		
-		public String UUID;
+		/**
+		 * Publishes the axis lengths of a live position once an update is done,
+		 * see {@link #getSizes(ImageMetadata)}.
+		 */
+		void publishSizes(final ImageMetadata ms) {
+			liveSizes = new long[] { ms.getAxisLength(Axes.Z), ms.getAxisLength(
+				Axes.CHANNEL), ms.getAxisLength(Axes.TIME) };
+		}
 
-		public Location getLocation(final Metadata meta, final int imageIndex,
-				final long planeIndex)
-			{
-			
-				final long[] zct = FormatTools.rasterToPosition(imageIndex, planeIndex,
-					meta, Index.expectedAxes);
+		/**
+		 * @return The number of planes that were acquired, that is that have a
+		 *         metadata block.
+		 */
+		public int getAcquiredPlaneCount(final ImageMetadata ms) {
+			return getAcquiredPlanes(ms).cardinality();
+		}
 
-				// Look for file associated with computed zct position
-				for (final Index key : locationMap.keySet()) {
-					if (key.z == zct[0] && key.c == zct[1] && key.t == zct[2]) {
-						final Location file = locationMap.get(key);
+		/**
+		 * @return The indices of the acquired planes in increasing order. Planes
+		 *         skipped by a sparse acquisition are left out.
+		 */
+		public PrimitiveIterator.OfInt acquiredPlanes(
+			final ImageMetadata ms)
+		{
+			return getAcquiredPlanes(ms).stream().iterator();
+		}
 
-						if (tiffs != null) {
-							for (final Location tiff : tiffs) {
-								if (tiff.getName().equals(file.getName())) {
-									return tiff;
-								}
-							}
-						}
-					}
+		/**
+		 * @return One bit per plane index, set for acquired planes. Built from
+		 *         {@link #blockIndex} on first use and again when planes were
+		 *         added. The returned set is never modified afterwards.
+		 */
+		private BitSet getAcquiredPlanes(final ImageMetadata ms) {
+			final long[] sizes = getSizes(ms);
+			final long sizeZ = sizes[0];
+			final long sizeC = sizes[1];
+			final long sizeT = sizes[2];
+			final long planes = sizeZ * sizeC * sizeT;
+			final BitTable built = acquired;
+			if (built != null && built.size == planes) return built.bits;
+
+			synchronized (this) {
+				final BitSet bits = new BitSet((int) planes);
+				for (int slot = 0; slot < blockIndex.size(); slot++) {
+					final int z = blockIndex.getZ(slot);
+					final int c = blockIndex.getC(slot);
+					final int t = blockIndex.getT(slot);
+					if (z >= sizeZ || c >= sizeC || t >= sizeT) continue;
+					bits.set((int) (z + sizeZ * (c + sizeC * t)));
 				}
-				if (tiffs == null) return null;
-				return locationMap.size() == 0 ? tiffs.get((int) planeIndex) : null;
+				acquired = new BitTable(bits, planes);
+				return bits;
 			}
-		
+		}
+
 		//DROP-IN
-		public boolean hasPlane(final Metadata meta, final int imageIndex,
-											   final long planeIndex)
+		public boolean hasPlane(final Metadata meta,
+			final int imageIndex, final long planeIndex)
 		{
-			final long[] zct = FormatTools.rasterToPosition(imageIndex, planeIndex,
-					meta, Index.expectedAxes);
-
-			return planeToMetaTable.containsKey("MPlane-" + imageIndex + "-" + zct[0] + "-" + zct[1] + "-" + zct[2]);
+			return planeIndex >= 0 && planeIndex < Integer.MAX_VALUE &&
+				getAcquiredPlanes(meta.get(imageIndex)).get((int) planeIndex);
 		}
 
-		public Map<String, String> getPlaneMap(final Metadata meta, final int imageIndex,
-			final long planeIndex)
+		/**
+		 * @return The properties of the plane, read from the metadata file on
+		 *         first use, or null if the plane has no metadata block.
+		 * @throws UncheckedIOException If the block could not be read, for
+		 *           example because the metadata file was truncated.
+		 */
+		public Map<String, String> getPlaneMap(final Metadata meta,
+			final int imageIndex, final long planeIndex)
 		{
 			final long[] zct = FormatTools.rasterToPosition(imageIndex, planeIndex,
-					meta, Index.expectedAxes);
-				
-			return planeToMetaTable.get("MPlane-" + imageIndex + "-" + zct[0] + "-" + zct[1] + "-" + zct[2]);
+				meta, Index.expectedAxes);
+
+			while (true) {
+				final int slot;
+				final long offset;
+				final int length;
+				synchronized (this) {
+					slot = blockIndex.getSlot(zct[0], zct[1], zct[2]);
+					if (slot < 0) return null;
+					offset = blockIndex.getOffset(slot);
+					length = blockIndex.getLength(slot);
+					if (planeMetadata.hasRow(slot) || planeReader == null ||
+						offset < 0) return planeMetadata.getPlaneMap(slot);
+				}
+
+				// Materialize the block from the metadata file, without keeping
+				// other planes waiting for the disk
+				final List<String> properties = new ArrayList<>();
+				try {
+					planeReader.read(offset, length, (k, v, userData) -> {
+						properties.add(k);
+						properties.add(v);
+					});
+				}
+				catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				synchronized (this) {
+					// a live update may have replaced the block in the meantime
+					if (blockIndex.getSlot(zct[0], zct[1], zct[2]) != slot || blockIndex
+						.getOffset(slot) != offset) continue;
+					if (!planeMetadata.hasRow(slot)) {
+						for (int i = 0; i < properties.size(); i += 2)
+							planeMetadata.put(slot, properties.get(i), properties.get(i +
+								1));
+						planeMetadata.addRow(slot);
+					}
+					return planeMetadata.getPlaneMap(slot);
+				}
+			}
 		}
-		
-		public void putPlaneMap(final String key, final Map<String, String> map)
+
+		/**
+		 * Stores the properties of a plane under a key of the form
+		 * "MPlane-imageIndex-z-c-t".
+		 */
+		public synchronized void putPlaneMap(final String key,
+			final Map<String, String> map)
 		{
-			planeToMetaTable.put(key, map);
+			final String[] parts = key.split("-");
+			final int z = Integer.parseInt(parts[2]);
+			final int c = Integer.parseInt(parts[3]);
+			final int t = Integer.parseInt(parts[4]);
+			int slot = blockIndex.getSlot(z, c, t);
+			if (slot < 0) {
+				slot = blockIndex.put(z, c, t, -1, 0);
+				timeline = null;
+				acquired = null;
+			}
+			planeMetadata.putAll(slot, map);
 		}
 		
 		public NonNegativeInteger getTheZ(final Metadata meta, final int imageIndex,
@@ -1537,9 +3634,22 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 			return new NonNegativeInteger((int)zct[2]);
 		}
 		//
+
+		/** Bit set published together with the size it was built for. */
+		private static final class BitTable {
+
+			private final BitSet bits;
+
+			private final long size;
+
+			private BitTable(final BitSet bits, final long size) {
+				this.bits = bits;
+				this.size = size;
+			}
+		}
 	}
 
-	private static class Index {
+	static class Index {
 
 		public int z;
 
@@ -1557,5 +3667,78 @@ public class MarsMicromanagerFormat extends AbstractFormat {
 			c = zct[1];
 			t = zct[2];
 		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Index)) return false;
+			final Index other = (Index) o;
+			return z == other.z && c == other.c && t == other.t;
+		}
+
+		@Override
+		public int hashCode() {
+			return (t * 31 + c) * 31 + z;
+		}
+	}
+
+	/** Receives the properties of a per-plane metadata block. */
+	interface PlanePropertyConsumer {
+
+		/**
+		 * @param userData true for properties of an MM 2.0 UserData section.
+		 */
+		void accept(String key, String value, boolean userData)
+			throws IOException;
+	}
+
+	/**
+	 * Materializes single per-plane metadata blocks, recorded in a
+	 * {@link PlaneBlockIndex}, by re-reading them from the metadata file. The handle
+	 * is kept open between reads and closed with the {@link Metadata}.
+	 */
+	static class PlaneMetadataReader implements Closeable {
+
+		private final DataHandleService dataHandleService;
+
+		private final Location location;
+
+		private final boolean mv2;
+
+		private DataHandle<Location> handle;
+
+		public PlaneMetadataReader(final DataHandleService dataHandleService,
+			final Location location, final boolean mv2)
+		{
+			this.dataHandleService = dataHandleService;
+			this.location = location;
+			this.mv2 = mv2;
+		}
+
+		public synchronized void read(final long offset, final int length,
+			final PlanePropertyConsumer consumer) throws IOException
+		{
+			if (handle != null && offset + length > handle.length()) {
+				// the file of a live position grew since the handle was opened
+				close();
+			}
+			if (handle == null) handle = dataHandleService.create(location);
+			final MetadataTokenizer st = new MetadataTokenizer(handle, offset,
+				offset + length);
+			// skip the FrameKey or Coords header
+			st.nextToken();
+
+			if (mv2) Parser.readPlaneBlockMV2(st, consumer);
+			else Parser.readPlaneBlockMV1(st, consumer);
+		}
+
+		public boolean isMV2() {
+			return mv2;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (handle != null) handle.close();
+			handle = null;
+		}
 	}
 }
@@ -37,6 +37,7 @@ import io.scif.ome.services.OMEMetadataService;
 import org.scijava.io.location.Location;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -115,6 +116,12 @@ public class MarsMicromanagerTranslator {
 				log().error(
 					"Error populating Metadata store with Micromanager metadata", e);
 			}
+			catch (final UncheckedIOException e) {
+				// plane metadata is read from metadata.txt on demand
+				log().error(
+					"Error populating Metadata store with Micromanager metadata", e
+						.getCause());
+			}
 		}
 
 		private void populateMetadata(final Metadata meta,
@@ -177,7 +184,7 @@ public class MarsMicromanagerTranslator {
 				store.setDoubleAnnotationValue((double)p.positionIndex, 0);
 				store.setDoubleAnnotationID("ImageID", 0);
 
-				int nextStamp = 0;
+				final PlaneTimeline timeline = p.getTimeline(meta.get(i));
 				for (int q = 0; q < meta.get(i).getPlaneCount(); q++) {
 					if (p.exposureTime != null)
 						store.setPlaneExposureTime(new Time(p.exposureTime, UNITS.SECOND), i,
@@ -188,9 +195,9 @@ public class MarsMicromanagerTranslator {
 					//Check if the plane exists. If a sparse collection was performed some planes
 					//may not have been collected.
 					if (positions.get(i).hasPlane(meta, i, q)) {
-						if (nextStamp < p.timestamps.length)
-							store.setPlaneDeltaT(new Time(p.timestamps[nextStamp++],
-									UNITS.SECOND), i, q);
+						final double deltaT = timeline.getTime(q);
+						if (!Double.isNaN(deltaT))
+							store.setPlaneDeltaT(new Time(deltaT, UNITS.SECOND), i, q);
 
 						store.setPlaneTheC(p.getTheC(meta, i, q), i, q);
 						store.setPlaneTheZ(p.getTheZ(meta, i, q), i, q);
@@ -214,9 +221,9 @@ public class MarsMicromanagerTranslator {
 					store.setDetectorSettingsBinning(//
 						omexmlMetadataService.getBinning(p.binning), i, c);
 					store.setDetectorSettingsGain(new Double(p.gain), i, c);
-					if (c < p.voltage.size()) {
-						store.setDetectorSettingsVoltage(new ElectricPotential(p.voltage
-							.get(c), UNITS.VOLT), i, c);
+					if (c < p.voltageCount) {
+						store.setDetectorSettingsVoltage(new ElectricPotential(p.voltage[c],
+							UNITS.VOLT), i, c);
 					}
 					store.setDetectorSettingsID(p.detectorID, i, c);
 				}
@@ -0,0 +1,533 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.ImageMetadata;
+import io.scif.MetaTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imagej.axis.AxisType;
+import net.imagej.axis.Axes;
+
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.handle.DataHandleInputStream;
+import org.scijava.io.handle.DataHandleOutputStream;
+import org.scijava.io.handle.DataHandleService;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+import de.mpg.biochem.mars.scifio.MarsMicromanagerFormat.Index;
+import de.mpg.biochem.mars.scifio.MarsMicromanagerFormat.PlaneMetadataReader;
+import de.mpg.biochem.mars.scifio.MarsMicromanagerFormat.Position;
+
+/**
+ * Binary sidecar holding everything parsed from the metadata.txt file of one
+ * {@link Position}, so that reopening an acquisition does not have to parse
+ * the text again. A sidecar is only used when the length and modification
+ * time of the metadata file, the format version and the CheckZvsTIME
+ * preference all match the values it was written with. Sidecars are streamed
+ * in both directions, and on the file system a new sidecar is written to a
+ * temporary file that is then renamed over the old one, so readers never see
+ * a partially written sidecar.
+ * <p>
+ * Locations are stored as names relative to the folder of the metadata file.
+ * </p>
+ *
+ * @author Karl Duderstadt
+ */
+class MetadataCache {
+
+	/** "MMMC" */
+	private static final int MAGIC = 0x4d4d4d43;
+
+	/**
+	 * Bump whenever the layout changes or new {@link Position} fields are
+	 * written, older sidecars are then ignored and rewritten.
+	 */
+	static final int VERSION = 6;
+
+	/** Suffix of sidecar files, appended to the name of the metadata file. */
+	static final String SUFFIX = ".marscache";
+
+	private static final AxisType[] AXES = { Axes.X, Axes.Y, Axes.Z,
+		Axes.CHANNEL, Axes.TIME };
+
+	private MetadataCache() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Loads the position from the sidecar if it is still valid for the given
+	 * metadata file.
+	 *
+	 * @return False if the sidecar does not exist, is stale or unreadable, in
+	 *         which case nothing was changed.
+	 */
+	static boolean read(final DataHandleService dataHandleService,
+		final Location cache, final DataHandle<Location> metadata,
+		final boolean checkZvsTime, final ImageMetadata ms, final Position p,
+		final MetaTable table) throws IOException
+	{
+		if (!dataHandleService.exists(cache)) return false;
+
+		try (DataHandle<Location> handle = dataHandleService.create(cache)) {
+			if (handle.length() < 16) return false;
+			handle.seek(0);
+			return read(dataHandleService, new DataInputStream(
+				new BufferedInputStream(new DataHandleInputStream<>(handle))), metadata,
+				checkZvsTime, ms, p, table);
+		}
+	}
+
+	private static boolean read(final DataHandleService dataHandleService,
+		final DataInputStream in, final DataHandle<Location> metadata,
+		final boolean checkZvsTime, final ImageMetadata ms, final Position p,
+		final MetaTable table) throws IOException
+	{
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) return false;
+		if (in.readLong() != metadata.length() || in.readLong() != lastModified(
+			metadata) || in.readBoolean() != checkZvsTime) return false;
+		if (!metadata.get().getURI().toString().equals(readString(in))) {
+			return false;
+		}
+
+		// decode into fresh objects, so a truncated sidecar leaves p untouched
+		final Position cached = new Position();
+		cached.metadataFile = p.metadataFile;
+		final boolean mv2 = in.readBoolean();
+
+		final String name = readString(in);
+		final long[] lengths = new long[AXES.length];
+		for (int i = 0; i < lengths.length; i++)
+			lengths[i] = in.readLong();
+		final int pixelType = in.readInt();
+
+		cached.channels = readStrings(in);
+		cached.comment = readString(in);
+		cached.time = readString(in);
+		cached.exposureTime = readDouble(in);
+		cached.sliceThickness = readDouble(in);
+		cached.pixelSize = readDouble(in);
+		cached.gain = in.readInt();
+		cached.binning = readString(in);
+		cached.detectorID = readString(in);
+		cached.detectorModel = readString(in);
+		cached.detectorManufacturer = readString(in);
+		cached.temperature = in.readDouble();
+		cached.positionIndex = in.readInt();
+		final int voltageCount = in.readInt();
+		if (voltageCount >= 0) {
+			cached.voltage = new double[voltageCount];
+			for (int i = 0; i < voltageCount; i++)
+				cached.voltage[i] = in.readDouble();
+			cached.voltageCount = voltageCount;
+		}
+		cached.cameraRef = readString(in);
+		cached.cameraMode = readString(in);
+		cached.UUID = readString(in);
+		cached.swapZandTime = in.readBoolean();
+
+		final String baseTiff = readString(in);
+		if (baseTiff != null) cached.baseTiff = p.metadataFile.sibling(baseTiff);
+		if (in.readBoolean()) {
+			cached.tiffs = new GeneratedTIFFList(p.metadataFile, in.readBoolean(),
+				readString(in), in.readInt(), in.readInt(), readStrings(in), in
+					.readBoolean(), in.readInt(), in.readInt(), in.readInt(), in
+						.readInt());
+		}
+		final String[] tiffs = readStrings(in);
+		if (tiffs != null) {
+			cached.tiffs = new ArrayList<>(tiffs.length);
+			for (final String tiff : tiffs)
+				cached.tiffs.add(p.metadataFile.sibling(tiff));
+		}
+		final int locationCount = in.readInt();
+		for (int i = 0; i < locationCount; i++) {
+			final Index index = new Index(new int[] { in.readInt(), in.readInt(), in
+				.readInt() });
+			cached.locationMap.put(index, p.metadataFile.sibling(readString(in)));
+		}
+		final int generatedWords = in.readInt();
+		if (generatedWords >= 0) {
+			final long[] words = new long[generatedWords];
+			for (int i = 0; i < generatedWords; i++)
+				words[i] = in.readLong();
+			cached.generatedPlanes = BitSet.valueOf(words);
+		}
+		final int planeFileCount = in.readInt();
+		if (planeFileCount >= 0) {
+			cached.planeFiles = new int[planeFileCount];
+			for (int i = 0; i < planeFileCount; i++)
+				cached.planeFiles[i] = in.readInt();
+		}
+		cached.fixedPlaneFiles = in.readBoolean();
+		final int stackSize = in.readInt();
+		if (stackSize >= 0) {
+			cached.stackIndex = new MMStackIndex();
+			cached.stackIndex.setLittleEndian(in.readBoolean());
+			for (int i = 0; i < stackSize; i++)
+				cached.stackIndex.add(in.readInt(), in.readInt(), in.readInt(), in
+					.readInt(), in.readLong());
+		}
+
+		final int blockCount = in.readInt();
+		for (int i = 0; i < blockCount; i++) {
+			final int slot = cached.blockIndex.put(in.readInt(), in.readInt(), in
+				.readInt(), in.readLong(), in.readInt());
+			cached.blockIndex.setTime(slot, in.readDouble());
+		}
+		final String[] keys = readStrings(in);
+		final int rowCount = in.readInt();
+		for (int i = 0; i < rowCount; i++) {
+			final int row = in.readInt();
+			cached.planeMetadata.addRow(row);
+			final int propertyCount = in.readInt();
+			for (int j = 0; j < propertyCount; j++)
+				cached.planeMetadata.put(row, keys[in.readInt()], readString(in));
+		}
+
+		final int tableSize = in.readInt();
+		final String[] tableEntries = new String[tableSize * 2];
+		for (int i = 0; i < tableEntries.length; i++)
+			tableEntries[i] = readString(in);
+
+		// everything was read, apply
+		copy(cached, p);
+		p.planeReader = new PlaneMetadataReader(dataHandleService, metadata.get(),
+			mv2);
+		ms.setName(name);
+		for (int i = 0; i < AXES.length; i++) {
+			if (lengths[i] >= 0) ms.setAxisLength(AXES[i], lengths[i]);
+		}
+		ms.setPixelType(pixelType);
+		for (int i = 0; i < tableEntries.length; i += 2)
+			table.put(tableEntries[i], tableEntries[i + 1]);
+		return true;
+	}
+
+	/**
+	 * Writes the parsed position to the sidecar, replacing any earlier one.
+	 */
+	static void write(final DataHandleService dataHandleService,
+		final Location cache, final DataHandle<Location> metadata,
+		final boolean checkZvsTime, final ImageMetadata ms, final Position p,
+		final MetaTable table) throws IOException
+	{
+		if (cache instanceof FileLocation) {
+			final Path target = ((FileLocation) cache).getFile().toPath();
+			final Path temp = Files.createTempFile(target.toAbsolutePath()
+				.getParent(), target.getFileName().toString(), ".tmp");
+			try {
+				try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp))))
+				{
+					write(out, metadata, checkZvsTime, ms, p, table);
+				}
+				try {
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+				}
+				catch (final AtomicMoveNotSupportedException e) {
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			finally {
+				Files.deleteIfExists(temp);
+			}
+			return;
+		}
+
+		// other locations cannot be renamed, the sidecar is replaced in place
+		try (DataHandle<Location> handle = dataHandleService.create(cache)) {
+			handle.seek(0);
+			final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new DataHandleOutputStream<>(handle)));
+			write(out, metadata, checkZvsTime, ms, p, table);
+			out.flush();
+			handle.setLength(handle.offset());
+		}
+	}
+
+	private static void write(final DataOutputStream out,
+		final DataHandle<Location> metadata, final boolean checkZvsTime,
+		final ImageMetadata ms, final Position p, final MetaTable table)
+		throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(metadata.length());
+		out.writeLong(lastModified(metadata));
+		out.writeBoolean(checkZvsTime);
+		writeString(out, metadata.get().getURI().toString());
+		out.writeBoolean(p.planeReader != null && p.planeReader.isMV2());
+
+		writeString(out, ms.getName());
+		for (final AxisType axis : AXES)
+			out.writeLong(ms.getAxisLength(axis));
+		out.writeInt(ms.getPixelType());
+
+		writeStrings(out, p.channels);
+		writeString(out, p.comment);
+		writeString(out, p.time);
+		writeDouble(out, p.exposureTime);
+		writeDouble(out, p.sliceThickness);
+		writeDouble(out, p.pixelSize);
+		out.writeInt(p.gain);
+		writeString(out, p.binning);
+		writeString(out, p.detectorID);
+		writeString(out, p.detectorModel);
+		writeString(out, p.detectorManufacturer);
+		out.writeDouble(p.temperature);
+		out.writeInt(p.positionIndex);
+		if (p.voltage == null) out.writeInt(-1);
+		else {
+			out.writeInt(p.voltageCount);
+			for (int i = 0; i < p.voltageCount; i++)
+				out.writeDouble(p.voltage[i]);
+		}
+		writeString(out, p.cameraRef);
+		writeString(out, p.cameraMode);
+		writeString(out, p.UUID);
+		out.writeBoolean(p.swapZandTime);
+
+		writeString(out, p.baseTiff == null ? null : p.baseTiff.getName());
+		// generated lists are stored as their naming template
+		final boolean generated = p.tiffs instanceof GeneratedTIFFList;
+		out.writeBoolean(generated);
+		if (generated) {
+			final GeneratedTIFFList tiffs = (GeneratedTIFFList) p.tiffs;
+			out.writeBoolean(tiffs.isMV2());
+			writeString(out, tiffs.getPrefix());
+			out.writeInt(tiffs.getFirstWidth());
+			out.writeInt(tiffs.getLastWidth());
+			writeStrings(out, tiffs.getChannels());
+			out.writeBoolean(tiffs.isSwapZandTime());
+			out.writeInt(tiffs.getPositionIndex());
+			out.writeInt(tiffs.getSizeZ());
+			out.writeInt(tiffs.getSizeC());
+			out.writeInt(tiffs.getFrames());
+		}
+		if (p.tiffs == null || generated) out.writeInt(-1);
+		else {
+			out.writeInt(p.tiffs.size());
+			for (final Location tiff : p.tiffs)
+				writeString(out, tiff.getName());
+		}
+		out.writeInt(p.locationMap.size());
+		for (final Map.Entry<Index, Location> entry : p.locationMap.entrySet()) {
+			out.writeInt(entry.getKey().z);
+			out.writeInt(entry.getKey().c);
+			out.writeInt(entry.getKey().t);
+			writeString(out, entry.getValue().getName());
+		}
+		if (p.generatedPlanes == null) out.writeInt(-1);
+		else {
+			final long[] words = p.generatedPlanes.toLongArray();
+			out.writeInt(words.length);
+			for (final long word : words)
+				out.writeLong(word);
+		}
+		if (p.planeFiles == null) out.writeInt(-1);
+		else {
+			out.writeInt(p.planeFiles.length);
+			for (final int file : p.planeFiles)
+				out.writeInt(file);
+		}
+		out.writeBoolean(p.fixedPlaneFiles);
+		final MMStackIndex stack = p.stackIndex;
+		if (stack == null) out.writeInt(-1);
+		else {
+			out.writeInt(stack.size());
+			out.writeBoolean(stack.isLittleEndian());
+			for (int i = 0; i < stack.size(); i++) {
+				out.writeInt(stack.getChannel(i));
+				out.writeInt(stack.getSlice(i));
+				out.writeInt(stack.getFrame(i));
+				out.writeInt(stack.getFile(i));
+				out.writeLong(stack.getOffset(i));
+			}
+		}
+
+		final PlaneBlockIndex blocks = p.blockIndex;
+		out.writeInt(blocks.size());
+		for (int slot = 0; slot < blocks.size(); slot++) {
+			out.writeInt(blocks.getZ(slot));
+			out.writeInt(blocks.getC(slot));
+			out.writeInt(blocks.getT(slot));
+			out.writeLong(blocks.getOffset(slot));
+			out.writeInt(blocks.getLength(slot));
+			out.writeDouble(blocks.getTime(slot));
+		}
+		final List<String> keys = p.planeMetadata.getKeys();
+		writeStrings(out, keys.toArray(new String[keys.size()]));
+		final Map<String, Integer> keyIndices = new HashMap<>(keys.size() * 2);
+		for (int i = 0; i < keys.size(); i++)
+			keyIndices.put(keys.get(i), i);
+		final List<Integer> rows = new ArrayList<>();
+		for (int slot = 0; slot < blocks.size(); slot++) {
+			if (p.planeMetadata.hasRow(slot)) rows.add(slot);
+		}
+		out.writeInt(rows.size());
+		for (final int row : rows) {
+			out.writeInt(row);
+			final Map<String, String> properties = p.planeMetadata.getPlaneMap(row);
+			out.writeInt(properties.size());
+			for (final Map.Entry<String, String> entry : properties.entrySet()) {
+				out.writeInt(keyIndices.get(entry.getKey()));
+				writeString(out, entry.getValue());
+			}
+		}
+
+		out.writeInt(table.size());
+		for (final Map.Entry<String, Object> entry : table.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue() == null ? null : String.valueOf(entry
+				.getValue()));
+		}
+		out.flush();
+	}
+
+	// -- Helper methods --
+
+	private static long lastModified(final DataHandle<Location> handle)
+		throws IOException
+	{
+		final Date date = handle.lastModified();
+		return date == null ? -1 : date.getTime();
+	}
+
+	private static void copy(final Position from, final Position to) {
+		to.channels = from.channels;
+		to.comment = from.comment;
+		to.time = from.time;
+		to.exposureTime = from.exposureTime;
+		to.sliceThickness = from.sliceThickness;
+		to.pixelSize = from.pixelSize;
+		to.timeline = null;
+		to.acquired = null;
+		to.gain = from.gain;
+		to.binning = from.binning;
+		to.detectorID = from.detectorID;
+		to.detectorModel = from.detectorModel;
+		to.detectorManufacturer = from.detectorManufacturer;
+		to.temperature = from.temperature;
+		to.positionIndex = from.positionIndex;
+		to.voltage = from.voltage;
+		to.voltageCount = from.voltageCount;
+		to.cameraRef = from.cameraRef;
+		to.cameraMode = from.cameraMode;
+		to.UUID = from.UUID;
+		to.swapZandTime = from.swapZandTime;
+		to.baseTiff = from.baseTiff;
+		to.tiffs = from.tiffs;
+		to.locationMap = from.locationMap;
+		to.generatedPlanes = from.generatedPlanes;
+		to.fileNames = from.fileNames;
+		to.planeFiles = from.planeFiles;
+		to.fixedPlaneFiles = from.fixedPlaneFiles;
+		to.stackIndex = from.stackIndex;
+		to.ifdOffsets = null;
+		to.blockIndex = from.blockIndex;
+		to.planeMetadata = from.planeMetadata;
+	}
+
+	private static void writeString(final DataOutputStream out,
+		final String value) throws IOException
+	{
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInputStream in)
+		throws IOException
+	{
+		final int length = in.readInt();
+		if (length < 0) return null;
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeStrings(final DataOutputStream out,
+		final String[] values) throws IOException
+	{
+		if (values == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.length);
+		for (final String value : values)
+			writeString(out, value);
+	}
+
+	private static String[] readStrings(final DataInputStream in)
+		throws IOException
+	{
+		final int length = in.readInt();
+		if (length < 0) return null;
+		final String[] values = new String[length];
+		for (int i = 0; i < length; i++)
+			values[i] = readString(in);
+		return values;
+	}
+
+	private static void writeDouble(final DataOutputStream out,
+		final Double value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null) out.writeDouble(value);
+	}
+
+	private static Double readDouble(final DataInputStream in)
+		throws IOException
+	{
+		return in.readBoolean() ? in.readDouble() : null;
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.scijava.io.handle.DataHandle;
+
+/**
+ * Streaming line tokenizer for Micro-Manager metadata.txt files. Lines are
+ * read directly from the bytes of a {@link DataHandle} through a small buffer,
+ * so there is no limit on the file size and only the line currently being
+ * decoded is held in memory. Empty lines are skipped, matching the behavior of
+ * a {@link java.util.StringTokenizer} splitting on newlines.
+ *
+ * @author Karl Duderstadt
+ */
+class MetadataTokenizer {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final DataHandle<?> handle;
+
+	/** File offset at which to stop reading, or -1 to read to the end. */
+	private final long limit;
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	/** Valid, unconsumed bytes are buffer[start] to buffer[end - 1]. */
+	private int start, end;
+
+	/** File offset of buffer[0]. */
+	private long bufferOffset;
+
+	/** File offset of the first byte of the last token returned. */
+	private long tokenOffset = -1;
+
+	private boolean eof;
+
+	/** If true, a last line without terminator is treated as not yet there. */
+	private boolean completeLinesOnly;
+
+	/** Lookahead token, filled by {@link #hasMoreTokens()}. */
+	private String next;
+
+	private long nextOffset;
+
+	public MetadataTokenizer(final DataHandle<?> handle) throws IOException {
+		this(handle, 0);
+	}
+
+	/**
+	 * Creates a tokenizer that starts reading at the given byte offset.
+	 */
+	public MetadataTokenizer(final DataHandle<?> handle, final long offset)
+		throws IOException
+	{
+		this(handle, offset, -1);
+	}
+
+	/**
+	 * Creates a tokenizer for the byte range from offset up to, but not
+	 * including, limit. Used to re-read a single block of the file.
+	 */
+	public MetadataTokenizer(final DataHandle<?> handle, final long offset,
+		final long limit) throws IOException
+	{
+		this.handle = handle;
+		this.limit = limit;
+		handle.seek(offset);
+		bufferOffset = offset;
+	}
+
+	/**
+	 * When set, a trailing line that is not terminated by a newline is not
+	 * returned, since the file may still be in the middle of writing it.
+	 */
+	public void setCompleteLinesOnly(final boolean completeLinesOnly) {
+		this.completeLinesOnly = completeLinesOnly;
+	}
+
+	public boolean hasMoreTokens() throws IOException {
+		if (next == null) readToken();
+		return next != null;
+	}
+
+	/**
+	 * @return The next non-empty line, without the line terminator.
+	 * @throws EOFException If the end of the file was reached.
+	 */
+	public String nextToken() throws IOException {
+		if (!hasMoreTokens()) {
+			throw new EOFException("Unexpected end of metadata file at offset " +
+				position());
+		}
+		final String token = next;
+		tokenOffset = nextOffset;
+		next = null;
+		return token;
+	}
+
+	/**
+	 * @return The file offset of the first byte of the last token returned by
+	 *         {@link #nextToken()}.
+	 */
+	public long tokenOffset() {
+		return tokenOffset;
+	}
+
+	/**
+	 * @return The file offset just past the last token returned by
+	 *         {@link #nextToken()} and its line terminator.
+	 */
+	public long position() {
+		return next == null ? bufferOffset + start : nextOffset;
+	}
+
+	private void readToken() throws IOException {
+		while (true) {
+			int newline = indexOfNewline(start);
+			while (newline < 0 && !eof) {
+				final int scanned = end - start;
+				fill();
+				newline = indexOfNewline(start + scanned);
+			}
+			final int lineEnd = newline < 0 ? end : newline;
+			if (lineEnd == start && newline < 0) return;
+			if (newline < 0 && completeLinesOnly) return;
+
+			final long lineOffset = bufferOffset + start;
+			final int length = lineEnd - start;
+			final int lineStart = start;
+			start = newline < 0 ? end : newline + 1;
+			if (length > 0) {
+				next = new String(buffer, lineStart, length, StandardCharsets.UTF_8);
+				nextOffset = lineOffset;
+				return;
+			}
+		}
+	}
+
+	private int indexOfNewline(final int from) {
+		for (int i = from; i < end; i++) {
+			if (buffer[i] == '\n') return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves the unconsumed bytes to the front of the buffer, growing it when a
+	 * single line does not fit, and reads more bytes from the handle.
+	 */
+	private void fill() throws IOException {
+		final int remaining = end - start;
+		if (start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, remaining);
+			bufferOffset += start;
+			start = 0;
+			end = remaining;
+		}
+		if (end == buffer.length) {
+			final byte[] grown = new byte[buffer.length * 2];
+			System.arraycopy(buffer, 0, grown, 0, end);
+			buffer = grown;
+		}
+		int length = buffer.length - end;
+		if (limit >= 0) length = (int) Math.min(length, limit - bufferOffset - end);
+		final int read = length > 0 ? handle.read(buffer, end, length) : -1;
+		if (read <= 0) eof = true;
+		else end += read;
+	}
+}
@@ -0,0 +1,536 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.FormatException;
+import io.scif.util.FormatTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.handle.DataHandleService;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Plane index of an NDTiff dataset, as written by Micro-Manager 2.0 and
+ * pycro-manager. The binary NDTiff.index file next to the data files lists
+ * every image with its axes, file, pixel offset, size and pixel type, so the
+ * images are laid out without reading any TIFF header or JSON metadata, and
+ * each plane is read with a single seek to its pixels.
+ * <p>
+ * The channel, z and time axes of the dataset become the CHANNEL, Z and TIME
+ * axes. Every distinct combination of the values of all other axes, such as
+ * position, row or column, becomes an image of its own. Axis values are
+ * numbered in increasing order for numbers and in order of first appearance
+ * for names.
+ * </p>
+ *
+ * @author Karl Duderstadt
+ */
+public class NDTiffIndex {
+
+	/** Name of the index file. */
+	public static final String INDEX = "NDTiff.index";
+
+	private static final String CHANNEL = "channel", Z = "z", TIME = "time";
+
+	/** Pixel types of the index, 8 bit RGB is not supported. */
+	private static final int EIGHT_BIT = 0, SIXTEEN_BIT = 1, EIGHT_BIT_RGB = 2;
+
+	private int size;
+
+	/** Index into {@link #files} of each entry. */
+	private int[] files = new int[16];
+
+	private long[] pixelOffsets = new long[16];
+
+	/** Z, C and T of each entry, numbered as described above. */
+	private int[] zs = new int[16], cs = new int[16], ts = new int[16];
+
+	/** Image of each entry. */
+	private int[] images = new int[16];
+
+	private final List<String> fileNames = new ArrayList<>();
+
+	private int width, height, pixelType;
+
+	private int sizeZ, sizeC, sizeT, imageCount;
+
+	private final List<String> channelNames = new ArrayList<>();
+
+	private boolean littleEndian = true;
+
+	// -- Reading --
+
+	/**
+	 * @return True if the name, or the last element of the path, is that of an
+	 *         NDTiff index. Both separators are accepted, since the name may
+	 *         come from a URI.
+	 */
+	public static boolean isIndex(final String name) {
+		return name.equals(INDEX) || name.endsWith("/" + INDEX) || name.endsWith(
+			"\\" + INDEX);
+	}
+
+	/**
+	 * @return True if the handle starts with the first entry of an NDTiff
+	 *         index.
+	 */
+	public static boolean isIndex(final DataHandle<Location> handle)
+		throws IOException
+	{
+		if (!handle.exists() || handle.length() < 4) return false;
+		final byte[] bytes = new byte[5];
+		handle.seek(0);
+		if (handle.read(bytes) < bytes.length) return false;
+		final int axesLength = ByteBuffer.wrap(bytes).order(
+			ByteOrder.LITTLE_ENDIAN).getInt();
+		return axesLength > 1 && axesLength < handle.length() && bytes[4] == '{';
+	}
+
+	/**
+	 * Reads the index, memory mapped if it is a local file.
+	 */
+	public static NDTiffIndex read(final DataHandleService dataHandleService,
+		final Location location) throws IOException, FormatException
+	{
+		ByteBuffer buffer = null;
+		if (location instanceof FileLocation) {
+			final File file = ((FileLocation) location).getFile();
+			if (file.length() <= Integer.MAX_VALUE) {
+				try (FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.READ))
+				{
+					buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, file
+						.length());
+				}
+			}
+		}
+		if (buffer == null) {
+			try (DataHandle<Location> handle = dataHandleService.create(location)) {
+				final long length = handle.length();
+				if (length > Integer.MAX_VALUE) {
+					throw new FormatException("NDTiff index is too large: " + location);
+				}
+				final byte[] bytes = new byte[(int) length];
+				handle.seek(0);
+				handle.readFully(bytes);
+				buffer = ByteBuffer.wrap(bytes);
+			}
+		}
+		final NDTiffIndex index = new NDTiffIndex();
+		index.parse(buffer.order(ByteOrder.LITTLE_ENDIAN));
+		return index;
+	}
+
+	/**
+	 * Parses all complete entries. A truncated last entry, as left by an
+	 * acquisition that is still running, is ignored.
+	 */
+	private void parse(final ByteBuffer buffer) throws FormatException {
+		final Map<String, Integer> fileIds = new HashMap<>();
+		final Map<String, AxisValues> axes = new LinkedHashMap<>();
+		final List<Map<String, Object>> entryAxes = new ArrayList<>();
+		while (buffer.remaining() > 0) {
+			final Map<String, Object> values;
+			final String fileName;
+			final long pixelOffset;
+			final int entryWidth, entryHeight, entryType, compression;
+			try {
+				values = parseAxes(readString(buffer));
+				fileName = readString(buffer);
+				pixelOffset = buffer.getInt() & 0xffffffffL;
+				entryWidth = buffer.getInt();
+				entryHeight = buffer.getInt();
+				entryType = buffer.getInt();
+				compression = buffer.getInt();
+				// metadata offset, length and compression
+				buffer.getInt();
+				buffer.getInt();
+				buffer.getInt();
+			}
+			catch (final BufferUnderflowException | IllegalArgumentException e) {
+				break;
+			}
+			if (compression != 0) {
+				throw new FormatException("Compressed NDTiff images are not supported");
+			}
+			if (entryType == EIGHT_BIT_RGB) {
+				throw new FormatException("RGB NDTiff images are not supported");
+			}
+			if (size == 0) {
+				width = entryWidth;
+				height = entryHeight;
+				pixelType = entryType;
+			}
+			else if (entryWidth != width || entryHeight != height ||
+				entryType != pixelType)
+			{
+				throw new FormatException(
+					"NDTiff images of different size or type are not supported");
+			}
+
+			Integer file = fileIds.get(fileName);
+			if (file == null) {
+				file = fileNames.size();
+				fileIds.put(fileName, file);
+				fileNames.add(fileName);
+			}
+			for (final Map.Entry<String, Object> value : values.entrySet())
+				axes.computeIfAbsent(value.getKey(), k -> new AxisValues()).add(value
+					.getValue());
+			entryAxes.add(values);
+			add(file, pixelOffset);
+		}
+
+		// number the axis values, then lay out the entries
+		for (final AxisValues values : axes.values())
+			values.sort();
+		final AxisValues channels = axes.get(CHANNEL);
+		if (channels != null) {
+			for (final Object channel : channels.sorted)
+				channelNames.add(String.valueOf(channel));
+		}
+		sizeZ = count(axes.get(Z));
+		sizeC = count(channels);
+		sizeT = count(axes.get(TIME));
+		final Map<List<Integer>, Integer> imageIds = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			final Map<String, Object> values = entryAxes.get(i);
+			zs[i] = number(axes, Z, values);
+			cs[i] = number(axes, CHANNEL, values);
+			ts[i] = number(axes, TIME, values);
+			final List<Integer> key = new ArrayList<>();
+			for (final String axis : axes.keySet()) {
+				if (!axis.equals(Z) && !axis.equals(CHANNEL) && !axis.equals(TIME)) {
+					key.add(number(axes, axis, values));
+				}
+			}
+			Integer image = imageIds.get(key);
+			if (image == null) {
+				image = imageIds.size();
+				imageIds.put(key, image);
+			}
+			images[i] = image;
+		}
+		imageCount = Math.max(1, imageIds.size());
+	}
+
+	// -- Layout --
+
+	public int getImageCount() {
+		return imageCount;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getSizeZ() {
+		return sizeZ;
+	}
+
+	public int getSizeC() {
+		return sizeC;
+	}
+
+	public int getSizeT() {
+		return sizeT;
+	}
+
+	/** @return The SCIFIO pixel type of all images. */
+	public int getPixelType() {
+		return pixelType == EIGHT_BIT ? FormatTools.UINT8 : FormatTools.UINT16;
+	}
+
+	/** @return The bits per pixel actually used, e.g. 12 for a 12 bit camera. */
+	public int getBitsPerPixel() {
+		switch (pixelType) {
+			case EIGHT_BIT:
+				return 8;
+			case SIXTEEN_BIT:
+				return 16;
+			case 3:
+				return 10;
+			case 4:
+				return 12;
+			case 5:
+				return 14;
+			case 6:
+				return 11;
+			default:
+				return 16;
+		}
+	}
+
+	/** @return The channel names in channel order. */
+	public String[] getChannelNames() {
+		return channelNames.toArray(new String[channelNames.size()]);
+	}
+
+	/** @return The names of the data files, relative to the index. */
+	public List<String> getFileNames() {
+		return fileNames;
+	}
+
+	/**
+	 * @return True if the pixels are stored little-endian, see
+	 *         {@link #setLittleEndian(boolean)}.
+	 */
+	public boolean isLittleEndian() {
+		return littleEndian;
+	}
+
+	/**
+	 * The index does not record the byte order of the pixels, which is that of
+	 * the TIFF header of the data files.
+	 */
+	public void setLittleEndian(final boolean littleEndian) {
+		this.littleEndian = littleEndian;
+	}
+
+	/**
+	 * Resolves the file and pixel offset of every plane of an image.
+	 *
+	 * @param planeFiles Receives the index into {@link #getFileNames()} of each
+	 *          plane, -1 for planes that were not acquired. Entries outside
+	 *          the planes it has room for are skipped.
+	 * @param offsets Receives the pixel offset of each plane, -1 for planes that
+	 *          were not acquired.
+	 * @param acquired Called with the Z, C and T of each acquired plane.
+	 */
+	public void fill(final int image, final int[] planeFiles,
+		final long[] offsets, final PlaneConsumer acquired)
+	{
+		Arrays.fill(planeFiles, -1);
+		Arrays.fill(offsets, -1);
+		for (int i = 0; i < size; i++) {
+			if (images[i] != image) continue;
+			if (zs[i] < 0 || zs[i] >= sizeZ || cs[i] < 0 || cs[i] >= sizeC ||
+				ts[i] < 0 || ts[i] >= sizeT) continue;
+			final long plane = zs[i] + (long) sizeZ * (cs[i] + (long) sizeC * ts[i]);
+			if (plane >= planeFiles.length) continue;
+			planeFiles[(int) plane] = files[i];
+			offsets[(int) plane] = pixelOffsets[i];
+			acquired.accept(zs[i], cs[i], ts[i]);
+		}
+	}
+
+	/** Receives the coordinates of a plane. */
+	public interface PlaneConsumer {
+
+		void accept(int z, int c, int t);
+	}
+
+	// -- Helper methods --
+
+	private void add(final int file, final long pixelOffset) {
+		if (size == files.length) {
+			final int capacity = size * 2;
+			files = Arrays.copyOf(files, capacity);
+			pixelOffsets = Arrays.copyOf(pixelOffsets, capacity);
+			zs = Arrays.copyOf(zs, capacity);
+			cs = Arrays.copyOf(cs, capacity);
+			ts = Arrays.copyOf(ts, capacity);
+			images = Arrays.copyOf(images, capacity);
+		}
+		files[size] = file;
+		pixelOffsets[size] = pixelOffset;
+		size++;
+	}
+
+	private static String readString(final ByteBuffer buffer) {
+		final int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int count(final AxisValues values) {
+		return values == null ? 1 : values.sorted.size();
+	}
+
+	private static int number(final Map<String, AxisValues> axes,
+		final String axis, final Map<String, Object> values)
+	{
+		final AxisValues numbers = axes.get(axis);
+		final Object value = values.get(axis);
+		// an entry without the axis is at its first value
+		return numbers == null || value == null ? 0 : numbers.numbers.get(value);
+	}
+
+	/**
+	 * Parses a flat JSON object of axis names to integer or string values, as
+	 * found in the index. Values that are not integers are kept as strings.
+	 */
+	static Map<String, Object> parseAxes(final String json) {
+		final Map<String, Object> values = new LinkedHashMap<>();
+		int i = skip(json, 0);
+		if (i >= json.length() || json.charAt(i) != '{') {
+			throw new IllegalArgumentException("Not an axes object: " + json);
+		}
+		i = skip(json, i + 1);
+		while (i < json.length() && json.charAt(i) != '}') {
+			final StringBuilder key = new StringBuilder();
+			i = readJSONString(json, i, key);
+			i = skip(json, i);
+			if (i >= json.length() || json.charAt(i) != ':') {
+				throw new IllegalArgumentException("Not an axes object: " + json);
+			}
+			i = skip(json, i + 1);
+			if (i < json.length() && json.charAt(i) == '"') {
+				final StringBuilder value = new StringBuilder();
+				i = readJSONString(json, i, value);
+				values.put(key.toString(), value.toString());
+			}
+			else {
+				final int start = i;
+				while (i < json.length() && json.charAt(i) != ',' && json.charAt(
+					i) != '}')
+					i++;
+				final String value = json.substring(start, i).trim();
+				try {
+					values.put(key.toString(), Integer.parseInt(value));
+				}
+				catch (final NumberFormatException e) {
+					values.put(key.toString(), value);
+				}
+			}
+			i = skip(json, i);
+			if (i < json.length() && json.charAt(i) == ',') i = skip(json, i + 1);
+		}
+		return values;
+	}
+
+	private static int skip(final String json, int i) {
+		while (i < json.length() && Character.isWhitespace(json.charAt(i)))
+			i++;
+		return i;
+	}
+
+	/** Reads the string starting at the quote at i, returns the index after. */
+	private static int readJSONString(final String json, int i,
+		final StringBuilder out)
+	{
+		if (i >= json.length() || json.charAt(i) != '"') {
+			throw new IllegalArgumentException("Not an axes object: " + json);
+		}
+		for (i++; i < json.length(); i++) {
+			final char ch = json.charAt(i);
+			if (ch == '"') return i + 1;
+			if (ch != '\\' || i + 1 >= json.length()) {
+				out.append(ch);
+				continue;
+			}
+			final char escaped = json.charAt(++i);
+			switch (escaped) {
+				case 'b':
+					out.append('\b');
+					break;
+				case 'f':
+					out.append('\f');
+					break;
+				case 'n':
+					out.append('\n');
+					break;
+				case 'r':
+					out.append('\r');
+					break;
+				case 't':
+					out.append('\t');
+					break;
+				case 'u':
+					if (i + 4 >= json.length()) {
+						throw new IllegalArgumentException("Not an axes object: " + json);
+					}
+					try {
+						out.append((char) Integer.parseInt(json.substring(i + 1, i + 5),
+							16));
+					}
+					catch (final NumberFormatException e) {
+						throw new IllegalArgumentException("Not an axes object: " + json);
+					}
+					i += 4;
+					break;
+				default:
+					out.append(escaped);
+			}
+		}
+		throw new IllegalArgumentException("Not an axes object: " + json);
+	}
+
+	/** The distinct values of one axis and their numbers. */
+	private static final class AxisValues {
+
+		private final List<Object> sorted = new ArrayList<>();
+
+		private final Map<Object, Integer> numbers = new HashMap<>();
+
+		private void add(final Object value) {
+			if (!numbers.containsKey(value)) {
+				numbers.put(value, -1);
+				sorted.add(value);
+			}
+		}
+
+		/** Numbers first in increasing order, then names in order of appearance. */
+		private void sort() {
+			sorted.sort((a, b) -> {
+				if (a instanceof Integer && b instanceof Integer) return Integer
+					.compare((Integer) a, (Integer) b);
+				if (a instanceof Integer) return -1;
+				if (b instanceof Integer) return 1;
+				return 0;
+			});
+			for (int i = 0; i < sorted.size(); i++)
+				numbers.put(sorted.get(i), i);
+		}
+	}
+}
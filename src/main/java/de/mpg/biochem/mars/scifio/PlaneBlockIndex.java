@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.util.Arrays;
+
+/**
+ * Primitive index of the per-plane metadata blocks of one position. For each
+ * acquired (z, c, t) only the byte offset and length of its FrameKey or
+ * Coords/Metadata block in metadata.txt are recorded. The block itself is
+ * parsed again when its properties are requested, so the memory used does not
+ * grow with the number of properties per plane.
+ *
+ * @author Karl Duderstadt
+ */
+public class PlaneBlockIndex {
+
+	private int size;
+
+	private int maxT = -1;
+
+	/** Packed (z, c, t) key of each slot. */
+	private long[] keys = new long[16];
+
+	private long[] offsets = new long[16];
+
+	private int[] lengths = new int[16];
+
+	/** ElapsedTime-ms of each slot in seconds, NaN if the block has none. */
+	private double[] times = newTimes(16);
+
+	/** Open addressing hash table holding slot + 1, 0 marks an empty bucket. */
+	private int[] buckets = new int[32];
+
+	/**
+	 * Records the block for the given plane, replacing an earlier block of the
+	 * same plane.
+	 *
+	 * @return The slot of the plane.
+	 * @throws IllegalArgumentException If z or c is larger than 65535, or any
+	 *           of z, c and t is negative.
+	 */
+	public int put(final int z, final int c, final int t, final long offset,
+		final int length)
+	{
+		if (z < 0 || c < 0 || t < 0 || z > 0xffff || c > 0xffff) {
+			throw new IllegalArgumentException("Plane (" + z + ", " + c + ", " + t +
+				") is out of the range of the block index");
+		}
+		final long key = pack(z, c, t);
+		int slot = find(key);
+		if (slot < 0) {
+			if (size == keys.length) grow();
+			slot = size++;
+			keys[slot] = key;
+			insert(key, slot);
+		}
+		offsets[slot] = offset;
+		lengths[slot] = length;
+		if (t > maxT) maxT = t;
+		return slot;
+	}
+
+	/**
+	 * @return The slot of the given plane or -1 if it has no metadata block.
+	 */
+	public int getSlot(final long z, final long c, final long t) {
+		if (z < 0 || c < 0 || t < 0 || z > 0xffff || c > 0xffff ||
+			t > Integer.MAX_VALUE) return -1;
+		return find(pack((int) z, (int) c, (int) t));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** @return The largest t of any plane, or -1 if there are none. */
+	public int getMaxT() {
+		return maxT;
+	}
+
+	public long getOffset(final int slot) {
+		return offsets[slot];
+	}
+
+	public int getLength(final int slot) {
+		return lengths[slot];
+	}
+
+	/** @return The elapsed time of the plane in seconds or NaN if unknown. */
+	public double getTime(final int slot) {
+		return times[slot];
+	}
+
+	public void setTime(final int slot, final double seconds) {
+		times[slot] = seconds;
+	}
+
+	public int getZ(final int slot) {
+		return (int) (keys[slot] & 0xffff);
+	}
+
+	public int getC(final int slot) {
+		return (int) ((keys[slot] >>> 16) & 0xffff);
+	}
+
+	public int getT(final int slot) {
+		return (int) (keys[slot] >>> 32);
+	}
+
+	// -- Helper methods --
+
+	private static long pack(final int z, final int c, final int t) {
+		return ((long) t << 32) | ((c & 0xffffL) << 16) | (z & 0xffffL);
+	}
+
+	private static double[] newTimes(final int capacity) {
+		final double[] times = new double[capacity];
+		Arrays.fill(times, Double.NaN);
+		return times;
+	}
+
+	private int bucket(final long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 33) & (buckets.length - 1);
+	}
+
+	private int find(final long key) {
+		for (int b = bucket(key);; b = (b + 1) & (buckets.length - 1)) {
+			final int entry = buckets[b];
+			if (entry == 0) return -1;
+			if (keys[entry - 1] == key) return entry - 1;
+		}
+	}
+
+	private void insert(final long key, final int slot) {
+		int b = bucket(key);
+		while (buckets[b] != 0)
+			b = (b + 1) & (buckets.length - 1);
+		buckets[b] = slot + 1;
+	}
+
+	private void grow() {
+		final int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		offsets = Arrays.copyOf(offsets, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		final double[] grown = newTimes(capacity);
+		System.arraycopy(times, 0, grown, 0, times.length);
+		times = grown;
+		buckets = new int[capacity * 2];
+		for (int slot = 0; slot < size; slot++)
+			insert(keys[slot], slot);
+	}
+}
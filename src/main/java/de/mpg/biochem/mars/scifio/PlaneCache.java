@@ -0,0 +1,223 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Byte budgeted least recently used cache of whole planes, for interactive
+ * review that keeps returning to the same frames. Planes can be stored off
+ * heap and can be compressed. Compression takes the difference of each byte to
+ * the same byte of the previous pixel before deflating, which suits the slowly
+ * varying values of 12 and 16 bit camera images. A plane that does not get
+ * smaller is stored as is.
+ *
+ * @author Karl Duderstadt
+ */
+class PlaneCache {
+
+	private static final class Entry {
+
+		private final ByteBuffer data;
+
+		private final boolean compressed;
+
+		/** Bytes per pixel, the distance of the bytes that were differenced. */
+		private final int stride;
+
+		/** Length of the plane before compression. */
+		private final int length;
+
+		private Entry(final ByteBuffer data, final boolean compressed,
+			final int stride, final int length)
+		{
+			this.data = data;
+			this.compressed = compressed;
+			this.stride = stride;
+			this.length = length;
+		}
+	}
+
+	private final long budget;
+
+	private final boolean compress;
+
+	private final boolean offHeap;
+
+	private final Map<Long, Entry> planes = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long size, hits, misses, evictions;
+
+	/**
+	 * @param budget Maximum number of bytes held by the stored planes.
+	 * @param compress If true, planes are compressed.
+	 * @param offHeap If true, planes are stored in direct buffers.
+	 */
+	PlaneCache(final long budget, final boolean compress,
+		final boolean offHeap)
+	{
+		this.budget = budget;
+		this.compress = compress;
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Copies a cached plane into buf.
+	 *
+	 * @return False if the plane is not cached. A cached plane of another
+	 *         length than buf is stale and dropped.
+	 */
+	boolean get(final int imageIndex, final long planeIndex, final byte[] buf) {
+		final Entry entry;
+		synchronized (this) {
+			final Long key = key(imageIndex, planeIndex);
+			entry = planes.get(key);
+			if (entry == null || entry.length != buf.length) {
+				if (entry != null) {
+					planes.remove(key);
+					size -= entry.data.capacity();
+				}
+				misses++;
+				return false;
+			}
+			hits++;
+		}
+		final ByteBuffer data = entry.data.duplicate();
+		if (!entry.compressed) {
+			data.get(buf);
+			return true;
+		}
+		final byte[] compressed = new byte[data.remaining()];
+		data.get(compressed);
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			if (inflater.inflate(buf) != buf.length) return false;
+		}
+		catch (final DataFormatException e) {
+			return false;
+		}
+		finally {
+			inflater.end();
+		}
+		for (int i = entry.stride; i < buf.length; i++)
+			buf[i] += buf[i - entry.stride];
+		return true;
+	}
+
+	/**
+	 * Stores a copy of a plane, evicting the least recently used ones.
+	 *
+	 * @param bytesPerPixel Bytes per pixel of the plane.
+	 */
+	void put(final int imageIndex, final long planeIndex, final byte[] plane,
+		final int bytesPerPixel)
+	{
+		if (plane.length > budget) return;
+		final int stride = Math.max(1, bytesPerPixel);
+		byte[] bytes = plane;
+		int length = plane.length;
+		boolean compressed = false;
+		if (compress) {
+			final byte[] delta = new byte[plane.length];
+			System.arraycopy(plane, 0, delta, 0, Math.min(stride, plane.length));
+			for (int i = stride; i < plane.length; i++)
+				delta[i] = (byte) (plane[i] - plane[i - stride]);
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				deflater.setInput(delta);
+				deflater.finish();
+				final byte[] out = new byte[plane.length];
+				final int deflated = deflater.deflate(out);
+				if (deflater.finished() && deflated < plane.length) {
+					bytes = out;
+					length = deflated;
+					compressed = true;
+				}
+			}
+			finally {
+				deflater.end();
+			}
+		}
+		final ByteBuffer data;
+		if (offHeap) {
+			data = ByteBuffer.allocateDirect(length);
+			data.put(bytes, 0, length);
+			((Buffer) data).flip();
+		}
+		else data = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+
+		synchronized (this) {
+			final Entry previous = planes.put(key(imageIndex, planeIndex), new Entry(
+				data, compressed, stride, plane.length));
+			if (previous != null) size -= previous.data.capacity();
+			size += length;
+			final Iterator<Entry> eldest = planes.values().iterator();
+			while (size > budget && eldest.hasNext()) {
+				size -= eldest.next().data.capacity();
+				eldest.remove();
+				evictions++;
+			}
+		}
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/** @return The number of bytes held by the stored planes. */
+	synchronized long getSize() {
+		return size;
+	}
+
+	synchronized void clear() {
+		planes.clear();
+		size = 0;
+	}
+
+	private static long key(final int imageIndex, final long planeIndex) {
+		return ((long) imageIndex << 40) | planeIndex;
+	}
+}
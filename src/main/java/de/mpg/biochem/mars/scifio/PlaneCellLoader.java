@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.ByteArrayPlane;
+import io.scif.FormatException;
+import io.scif.config.SCIFIOConfig;
+import io.scif.util.FormatTools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Fills the cells of a {@link CachedCellImg} over one image from the planes
+ * of a {@link MarsMicromanagerFormat.Reader}. A cell never spans more than one
+ * plane, so it is read with a single call of openPlane limited to the bounds
+ * of the cell, which goes through the plane cache, the memory mapped files
+ * and the other reading paths of the reader. The bytes are then converted
+ * from the byte order of the files into the primitive array of the cell.
+ *
+ * @author Karl Duderstadt
+ */
+class PlaneCellLoader<T extends NativeType<T>> implements CellLoader<T> {
+
+	private final MarsMicromanagerFormat.Reader reader;
+
+	private final int imageIndex;
+
+	/** Number of leading, planar axes. */
+	private final int planarAxes;
+
+	private final long[] nonPlanarLengths;
+
+	private final ByteOrder order;
+
+	private final SCIFIOConfig config;
+
+	PlaneCellLoader(final MarsMicromanagerFormat.Reader reader,
+		final int imageIndex, final int planarAxes, final long[] nonPlanarLengths,
+		final boolean littleEndian, final SCIFIOConfig config)
+	{
+		this.reader = reader;
+		this.imageIndex = imageIndex;
+		this.planarAxes = planarAxes;
+		this.nonPlanarLengths = nonPlanarLengths;
+		this.order = littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		this.config = config;
+	}
+
+	@Override
+	public void load(final SingleCellArrayImg<T, ?> cell) throws Exception {
+		long planeIndex = 0;
+		long stride = 1;
+		for (int d = planarAxes; d < cell.numDimensions(); d++) {
+			if (cell.dimension(d) != 1) {
+				throw new FormatException("Cells have to lie within one plane");
+			}
+			planeIndex += cell.min(d) * stride;
+			stride *= nonPlanarLengths[d - planarAxes];
+		}
+		final long[] min = new long[planarAxes];
+		final long[] max = new long[planarAxes];
+		for (int d = 0; d < planarAxes; d++) {
+			min[d] = cell.min(d);
+			max[d] = cell.max(d);
+		}
+		final Interval bounds = new FinalInterval(min, max);
+		final ByteArrayPlane plane = reader.openPlane(imageIndex, planeIndex,
+			reader.createPlane(bounds), bounds, config);
+		copy(plane.getBytes(), cell.getStorageArray(), order);
+	}
+
+	/**
+	 * Copies pixel bytes in the given byte order into a primitive array of the
+	 * same number of pixels.
+	 */
+	static void copy(final byte[] bytes, final Object array,
+		final ByteOrder order)
+	{
+		if (array instanceof byte[]) {
+			final byte[] values = (byte[]) array;
+			System.arraycopy(bytes, 0, values, 0, values.length);
+			return;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+		if (array instanceof short[]) buffer.asShortBuffer().get((short[]) array);
+		else if (array instanceof int[]) buffer.asIntBuffer().get((int[]) array);
+		else if (array instanceof float[]) buffer.asFloatBuffer().get(
+			(float[]) array);
+		else if (array instanceof double[]) buffer.asDoubleBuffer().get(
+			(double[]) array);
+		else throw new IllegalArgumentException("Unsupported storage array " +
+			array.getClass().getName());
+	}
+
+	/**
+	 * @return The ImgLib2 type of the given SCIFIO pixel type.
+	 * @throws FormatException If there is no matching type.
+	 */
+	static NativeType<?> createType(final int pixelType) throws FormatException {
+		switch (pixelType) {
+			case FormatTools.INT8:
+				return new ByteType();
+			case FormatTools.UINT8:
+				return new UnsignedByteType();
+			case FormatTools.INT16:
+				return new ShortType();
+			case FormatTools.UINT16:
+				return new UnsignedShortType();
+			case FormatTools.INT32:
+				return new IntType();
+			case FormatTools.UINT32:
+				return new UnsignedIntType();
+			case FormatTools.FLOAT:
+				return new FloatType();
+			case FormatTools.DOUBLE:
+				return new DoubleType();
+			default:
+				throw new FormatException("Unsupported pixel type: " + pixelType);
+		}
+	}
+}
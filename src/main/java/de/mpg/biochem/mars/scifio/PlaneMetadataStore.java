@@ -0,0 +1,308 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Columnar store for the per-plane metadata of one position. Each property
+ * name is kept once in a key dictionary and has its own column indexed by
+ * plane row. Columns holding only numbers, such as ElapsedTime-ms,
+ * Exposure-ms or stage positions, are stored in a primitive double array.
+ * Other columns are dictionary encoded, so a camera name repeated in every
+ * plane costs an int per plane. A column is demoted from numeric to string as
+ * soon as a value would not format back to exactly the same text.
+ * <p>
+ * {@link #getPlaneMap(int)} returns a read-only {@link Map} view of one row.
+ * </p>
+ *
+ * @author Karl Duderstadt
+ */
+public class PlaneMetadataStore {
+
+	private final Map<String, Integer> keyIds = new HashMap<>();
+
+	private final List<Column> columns = new ArrayList<>();
+
+	/** Rows that hold a plane, even one without properties. */
+	private final BitSet rows = new BitSet();
+
+	private int capacity = 16;
+
+	public synchronized boolean hasRow(final int row) {
+		return rows.get(row);
+	}
+
+	/** Marks the row as present without adding any property. */
+	public synchronized void addRow(final int row) {
+		rows.set(row);
+	}
+
+	/** Removes the row and all its properties. */
+	public synchronized void removeRow(final int row) {
+		for (final Column column : columns)
+			column.present.clear(row);
+		rows.clear(row);
+	}
+
+	public synchronized void put(final int row, final String key,
+		final String value)
+	{
+		ensureCapacity(row + 1);
+		rows.set(row);
+		Integer id = keyIds.get(key);
+		if (id == null) {
+			id = columns.size();
+			keyIds.put(key, id);
+			columns.add(new Column(key, capacity));
+		}
+		columns.get(id).set(row, value);
+	}
+
+	/** Replaces the row with the given properties. */
+	public synchronized void putAll(final int row,
+		final Map<String, String> properties)
+	{
+		for (final Column column : columns)
+			column.present.clear(row);
+		rows.set(row);
+		for (final Map.Entry<String, String> entry : properties.entrySet()) {
+			if (entry.getValue() != null) put(row, entry.getKey(), entry.getValue());
+		}
+	}
+
+	public synchronized String get(final int row, final String key) {
+		final Integer id = keyIds.get(key);
+		return id == null ? null : columns.get(id).get(row);
+	}
+
+	/**
+	 * @return The value as a double without going through a String, or NaN if
+	 *         the property is missing or not numeric.
+	 */
+	public synchronized double getDouble(final int row, final String key) {
+		final Integer id = keyIds.get(key);
+		if (id == null) return Double.NaN;
+		final Column column = columns.get(id);
+		if (!column.present.get(row)) return Double.NaN;
+		if (column.numbers != null) return column.numbers[row];
+		try {
+			return Double.parseDouble(column.dictionary.get(column.codes[row]));
+		}
+		catch (final NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/** @return The property names of all planes, in first-seen order. */
+	public synchronized List<String> getKeys() {
+		final List<String> keys = new ArrayList<>(columns.size());
+		for (final Column column : columns)
+			keys.add(column.key);
+		return keys;
+	}
+
+	/**
+	 * @return A read-only view of the properties of the given row, or null if
+	 *         the row is not present.
+	 */
+	public Map<String, String> getPlaneMap(final int row) {
+		return hasRow(row) ? new RowView(row) : null;
+	}
+
+	// -- Helper methods --
+
+	private void ensureCapacity(final int size) {
+		if (size <= capacity) return;
+		capacity = Math.max(size, capacity * 2);
+		for (final Column column : columns)
+			column.grow(capacity);
+	}
+
+	private synchronized List<Map.Entry<String, String>> entries(
+		final int row)
+	{
+		final List<Map.Entry<String, String>> entries = new ArrayList<>();
+		for (final Column column : columns) {
+			if (column.present.get(row)) entries.add(
+				new AbstractMap.SimpleImmutableEntry<>(column.key, column.get(row)));
+		}
+		return entries;
+	}
+
+	// -- Helper classes --
+
+	private static class Column {
+
+		private final String key;
+
+		private final BitSet present = new BitSet();
+
+		/** Values while the column is numeric, null once demoted. */
+		private double[] numbers;
+
+		/** True if the numeric values are written without a decimal point. */
+		private boolean integral;
+
+		private int[] codes;
+
+		private List<String> dictionary;
+
+		private Map<String, Integer> dictionaryIds;
+
+		private Column(final String key, final int capacity) {
+			this.key = key;
+			numbers = new double[capacity];
+		}
+
+		private void set(final int row, final String value) {
+			if (numbers != null) {
+				if (present.isEmpty()) integral = value.indexOf('.') < 0 && value
+					.indexOf('E') < 0;
+				final double number = parseExact(value, integral);
+				if (!Double.isNaN(number)) {
+					numbers[row] = number;
+					present.set(row);
+					return;
+				}
+				demote();
+			}
+			Integer code = dictionaryIds.get(value);
+			if (code == null) {
+				code = dictionary.size();
+				dictionary.add(value);
+				dictionaryIds.put(value, code);
+			}
+			codes[row] = code;
+			present.set(row);
+		}
+
+		private String get(final int row) {
+			if (!present.get(row)) return null;
+			if (numbers != null) return format(numbers[row], integral);
+			return dictionary.get(codes[row]);
+		}
+
+		private void grow(final int capacity) {
+			if (numbers != null) numbers = Arrays.copyOf(numbers, capacity);
+			else codes = Arrays.copyOf(codes, capacity);
+		}
+
+		/** Switches the column to dictionary encoded strings. */
+		private void demote() {
+			codes = new int[numbers.length];
+			dictionary = new ArrayList<>();
+			dictionaryIds = new HashMap<>();
+			final double[] values = numbers;
+			numbers = null;
+			for (int row = present.nextSetBit(0); row >= 0; row = present
+				.nextSetBit(row + 1))
+			{
+				final String value = format(values[row], integral);
+				Integer code = dictionaryIds.get(value);
+				if (code == null) {
+					code = dictionary.size();
+					dictionary.add(value);
+					dictionaryIds.put(value, code);
+				}
+				codes[row] = code;
+			}
+		}
+
+		/**
+		 * @return The parsed value or NaN if it would not format back to exactly
+		 *         the given text.
+		 */
+		private static double parseExact(final String value,
+			final boolean integral)
+		{
+			final double number;
+			try {
+				number = Double.parseDouble(value);
+			}
+			catch (final NumberFormatException e) {
+				return Double.NaN;
+			}
+			if (Double.isNaN(number) || Double.isInfinite(number)) return Double.NaN;
+			return format(number, integral).equals(value) ? number : Double.NaN;
+		}
+
+		private static String format(final double number, final boolean integral) {
+			if (integral && number == Math.rint(number) && Math.abs(
+				number) < 1e15) return Long.toString((long) number);
+			return Double.toString(number);
+		}
+	}
+
+	private class RowView extends AbstractMap<String, String> {
+
+		private final int row;
+
+		private RowView(final int row) {
+			this.row = row;
+		}
+
+		@Override
+		public String get(final Object key) {
+			return key instanceof String ? PlaneMetadataStore.this.get(row,
+				(String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(final Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+			final List<Map.Entry<String, String>> entries = entries(row);
+			return new AbstractSet<Map.Entry<String, String>>() {
+
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+					return entries.iterator();
+				}
+
+				@Override
+				public int size() {
+					return entries.size();
+				}
+			};
+		}
+	}
+}
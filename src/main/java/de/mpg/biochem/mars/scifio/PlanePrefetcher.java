@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.FormatException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads planes ahead of a consumer that goes through an image in plane order,
+ * as in tracking, trace extraction or movie export. Once two consecutive
+ * planes of an image were requested, the following planes up to the depth are
+ * loaded in the background, hiding the latency of opening each file on
+ * network storage. A request for any other plane cancels the read-ahead of
+ * that image, so at most depth planes per image are buffered.
+ *
+ * @author Karl Duderstadt
+ */
+class PlanePrefetcher {
+
+	/** Reads all bytes of one plane. */
+	interface PlaneLoader {
+
+		byte[] load(int imageIndex, long planeIndex) throws FormatException,
+			IOException;
+	}
+
+	private final PlaneLoader loader;
+
+	private final int depth;
+
+	private final ExecutorService executor;
+
+	/** Planes being loaded or loaded, see {@link #key(int, long)}. */
+	private final Map<Long, Future<byte[]>> buffer = new LinkedHashMap<>();
+
+	/** Last plane requested of each image. */
+	private final Map<Integer, Long> lastPlane = new HashMap<>();
+
+	private boolean closed;
+
+	/**
+	 * @param depth Number of planes to read ahead of the consumer.
+	 * @param threads Number of threads reading planes in the background.
+	 */
+	PlanePrefetcher(final PlaneLoader loader, final int depth,
+		final int threads)
+	{
+		this.loader = loader;
+		this.depth = depth;
+		executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			final Thread thread = new Thread(r, "Micro-Manager prefetch");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Records a request for a plane and returns it if it was read ahead,
+	 * waiting for it if it is still being read. Following planes are scheduled
+	 * when the request continues a sequential run.
+	 *
+	 * @return The bytes of the plane, or null if it was not read ahead or
+	 *         reading it failed, in which case the caller reads it itself.
+	 */
+	byte[] take(final int imageIndex, final long planeIndex,
+		final long planeCount)
+	{
+		final Future<byte[]> future;
+		synchronized (this) {
+			if (closed) return null;
+			future = buffer.remove(key(imageIndex, planeIndex));
+			final Long last = lastPlane.put(imageIndex, planeIndex);
+			if (last != null && last == planeIndex - 1) {
+				for (long p = planeIndex + 1; p <= planeIndex + depth &&
+					p < planeCount; p++)
+				{
+					final long plane = p;
+					buffer.computeIfAbsent(key(imageIndex, plane), k -> executor
+						.submit(() -> loader.load(imageIndex, plane)));
+				}
+			}
+			else cancel(imageIndex);
+		}
+		if (future == null) return null;
+		try {
+			return future.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (final ExecutionException | CancellationException e) {
+			return null;
+		}
+	}
+
+	/** Cancels the read-ahead and stops the background threads. */
+	synchronized void close() {
+		closed = true;
+		for (final Future<byte[]> future : buffer.values())
+			future.cancel(false);
+		buffer.clear();
+		lastPlane.clear();
+		// no interrupts, they would close the file channels of pooled readers
+		executor.shutdown();
+	}
+
+	/** Cancels the planes read ahead for an image. */
+	private void cancel(final int imageIndex) {
+		final Iterator<Map.Entry<Long, Future<byte[]>>> entries = buffer
+			.entrySet().iterator();
+		while (entries.hasNext()) {
+			final Map.Entry<Long, Future<byte[]>> entry = entries.next();
+			if (imageIndex(entry.getKey()) == imageIndex) {
+				entry.getValue().cancel(false);
+				entries.remove();
+			}
+		}
+	}
+
+	private static long key(final int imageIndex, final long planeIndex) {
+		return ((long) imageIndex << 40) | planeIndex;
+	}
+
+	private static int imageIndex(final long key) {
+		return (int) (key >>> 40);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.util.Arrays;
+
+/**
+ * Elapsed time of each plane of one position, taken from the ElapsedTime-ms
+ * property of its metadata block. Times are held in a primitive array indexed
+ * by plane index together with the plane indices sorted by time, so the plane
+ * acquired at a given time is found by binary search. This is used to line up
+ * camera frames with other time-stamped data such as force or flow-cell event
+ * logs.
+ *
+ * @author Karl Duderstadt
+ */
+public class PlaneTimeline {
+
+	/** Time in seconds of each plane, NaN for planes without a time. */
+	private final double[] times;
+
+	/** Indices of the planes with a time, in order of increasing time. */
+	private final int[] order;
+
+	/** Times of the planes in {@link #order}. */
+	private final double[] sorted;
+
+	/**
+	 * @param times Time in seconds of each plane, NaN for planes that were not
+	 *          acquired or have no time.
+	 */
+	public PlaneTimeline(final double[] times) {
+		this.times = times;
+		int count = 0;
+		for (final double time : times)
+			if (!Double.isNaN(time)) count++;
+		order = new int[count];
+		count = 0;
+		boolean ordered = true;
+		for (int plane = 0; plane < times.length; plane++) {
+			if (Double.isNaN(times[plane])) continue;
+			if (count > 0 && times[plane] < times[order[count - 1]]) ordered = false;
+			order[count++] = plane;
+		}
+		// planes are usually written in acquisition order already
+		if (!ordered) mergeSort(order, new int[count], 0, count);
+		sorted = new double[count];
+		for (int i = 0; i < count; i++)
+			sorted[i] = times[order[i]];
+	}
+
+	/**
+	 * Collects the times recorded in the block index into plane order.
+	 */
+	public static PlaneTimeline create(final PlaneBlockIndex blocks,
+		final long sizeZ, final long sizeC, final long sizeT)
+	{
+		final double[] times = new double[(int) (sizeZ * sizeC * sizeT)];
+		Arrays.fill(times, Double.NaN);
+		for (int slot = 0; slot < blocks.size(); slot++) {
+			final int z = blocks.getZ(slot);
+			final int c = blocks.getC(slot);
+			final int t = blocks.getT(slot);
+			if (z >= sizeZ || c >= sizeC || t >= sizeT) continue;
+			times[(int) (z + sizeZ * (c + sizeC * t))] = blocks.getTime(slot);
+		}
+		return new PlaneTimeline(times);
+	}
+
+	public int getPlaneCount() {
+		return times.length;
+	}
+
+	/** @return The number of planes that have a time. */
+	public int getTimedPlaneCount() {
+		return order.length;
+	}
+
+	/**
+	 * @return The elapsed time of the plane in seconds, or NaN if the plane was
+	 *         not acquired or has no time.
+	 */
+	public double getTime(final long planeIndex) {
+		if (planeIndex < 0 || planeIndex >= times.length) return Double.NaN;
+		return times[(int) planeIndex];
+	}
+
+	/**
+	 * @return The plane with the time closest to the given time in seconds, the
+	 *         earlier one on a tie, or -1 if no plane has a time.
+	 */
+	public int getNearestPlane(final double seconds) {
+		if (order.length == 0) return -1;
+		final int after = upperBound(seconds);
+		if (after == 0) return order[0];
+		// step back to the first plane with the time before the given one
+		int before = after - 1;
+		while (before > 0 && sorted[before - 1] == sorted[before])
+			before--;
+		if (after == order.length) return order[before];
+		return seconds - sorted[before] <= sorted[after] - seconds ? order[before]
+			: order[after];
+	}
+
+	/**
+	 * @return The last plane acquired at or before the given time in seconds,
+	 *         that is the frame on screen at that time, or -1 if the time is
+	 *         before the first plane.
+	 */
+	public int getEnclosingPlane(final double seconds) {
+		final int after = upperBound(seconds);
+		return after == 0 ? -1 : order[after - 1];
+	}
+
+	/** @return The index into {@link #sorted} of the first time > seconds. */
+	private int upperBound(final double seconds) {
+		int low = 0, high = sorted.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (sorted[mid] <= seconds) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/** Stable sort of plane indices by time, without boxing them. */
+	private void mergeSort(final int[] planes, final int[] buffer,
+		final int from, final int to)
+	{
+		if (to - from < 2) return;
+		final int mid = (from + to) >>> 1;
+		mergeSort(planes, buffer, from, mid);
+		mergeSort(planes, buffer, mid, to);
+		System.arraycopy(planes, from, buffer, from, to - from);
+		int i = from, j = mid;
+		for (int k = from; k < to; k++) {
+			if (j >= to || i < mid && times[buffer[i]] <= times[buffer[j]]) {
+				planes[k] = buffer[i++];
+			}
+			else planes[k] = buffer[j++];
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.FormatException;
+import io.scif.formats.tiff.IFD;
+import io.scif.formats.tiff.PhotoInterp;
+import io.scif.formats.tiff.TiffCompression;
+
+import java.io.IOException;
+
+import net.imglib2.Interval;
+
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.Location;
+
+/**
+ * Strip layout of one uncompressed IFD, which gives the file offset of every
+ * pixel row. Reading a region of the plane then fetches exactly the bytes of
+ * the requested rows and columns, instead of decoding whole strips, so a
+ * small window around one molecule costs a few hundred bytes rather than the
+ * whole plane. Unlike {@link TIFFTemplate} the strips may be anywhere in the
+ * file, which is the case for the planes of multi-page files.
+ *
+ * @author Karl Duderstadt
+ */
+class StripLayout {
+
+	private final long[] stripOffsets;
+
+	private final int rowsPerStrip, width, height, bytesPerPixel;
+
+	private StripLayout(final long[] stripOffsets, final int rowsPerStrip,
+		final int width, final int height, final int bytesPerPixel)
+	{
+		this.stripOffsets = stripOffsets;
+		this.rowsPerStrip = rowsPerStrip;
+		this.width = width;
+		this.height = height;
+		this.bytesPerPixel = bytesPerPixel;
+	}
+
+	/**
+	 * @param ifd A filled in IFD.
+	 * @param bytesPerPixel The bytes per pixel of the pixel type in the
+	 *          metadata.
+	 * @return The layout, or null if the pixels are not stored as plain rows,
+	 *         for example because they are compressed or tiled, or if their
+	 *         samples are not the size of the pixel type.
+	 */
+	static StripLayout create(final IFD ifd, final int bytesPerPixel)
+		throws FormatException
+	{
+		if (ifd.getCompression() != TiffCompression.UNCOMPRESSED || ifd
+			.isTiled() || ifd.getSamplesPerPixel() != 1 || ifd.getFillOrder() != 1 ||
+			ifd.getPhotometricInterpretation() == PhotoInterp.WHITE_IS_ZERO)
+		{
+			return null;
+		}
+		if (ifd.getBitsPerSample()[0] != bytesPerPixel * 8) return null;
+		final long width = ifd.getImageWidth();
+		final long height = ifd.getImageLength();
+		if (width * bytesPerPixel > Integer.MAX_VALUE || height >
+			Integer.MAX_VALUE) return null;
+
+		final long[] offsets = ifd.getStripOffsets();
+		final long[] counts = ifd.getStripByteCounts();
+		if (offsets == null || counts == null || offsets.length == 0 ||
+			counts.length != offsets.length) return null;
+		final long[] rows = ifd.getRowsPerStrip();
+		long rowsPerStrip = rows == null || rows.length == 0 || rows[0] <= 0
+			? height : Math.min(rows[0], height);
+		if (offsets.length == 1) rowsPerStrip = height;
+		if (rowsPerStrip <= 0 || (height + rowsPerStrip - 1) /
+			rowsPerStrip > offsets.length) return null;
+
+		// every strip must hold all of its rows
+		final long rowLength = width * bytesPerPixel;
+		for (int i = 0; i < offsets.length; i++) {
+			final long stripRows = Math.min(rowsPerStrip, height - i * rowsPerStrip);
+			if (stripRows > 0 && counts[i] < stripRows * rowLength) return null;
+		}
+		return new StripLayout(offsets, (int) rowsPerStrip, (int) width,
+			(int) height, bytesPerPixel);
+	}
+
+	/**
+	 * Reads the pixels within the bounds into buf. Rows that follow each other
+	 * in the file are fetched with one read.
+	 */
+	void read(final DataHandle<Location> handle, final byte[] buf,
+		final Interval bounds) throws IOException
+	{
+		final long x = bounds.min(0);
+		final long y = bounds.min(1);
+		final int rowLength = (int) bounds.dimension(0) * bytesPerPixel;
+		final int rows = (int) bounds.dimension(1);
+		final boolean wholeRows = x == 0 && bounds.dimension(0) == width;
+		int row = 0;
+		while (row < rows) {
+			final long offset = offset(y + row, x);
+			int run = 1;
+			while (wholeRows && row + run < rows && offset(y + row + run, 0) ==
+				offset + (long) run * rowLength)
+				run++;
+			handle.seek(offset);
+			handle.readFully(buf, row * rowLength, run * rowLength);
+			row += run;
+		}
+	}
+
+	int getWidth() {
+		return width;
+	}
+
+	int getHeight() {
+		return height;
+	}
+
+	private long offset(final long row, final long x) {
+		final int strip = (int) (row / rowsPerStrip);
+		return stripOffsets[strip] + ((row % rowsPerStrip) * width + x) *
+			bytesPerPixel;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.scijava.io.location.BrowsableLocation;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Finds the TIFF files of an MM 1.4 position from the names in its folder,
+ * used when the file names cannot be generated from the metadata. Names of
+ * the form prefix_time_channel_slice.tif are parsed once into integer ids per
+ * axis, so the cost is linear in the number of files and no {@link Location}
+ * is ever sorted, which matters for folders with hundreds of thousands of
+ * TIFFs. The plane of each file is resolved directly, so planes missing from
+ * the folder stay missing instead of shifting all later files.
+ *
+ * @author Karl Duderstadt
+ */
+class TIFFNameScanner {
+
+	/** Values of one axis, numbered in order of appearance. */
+	private final Axis times = new Axis(), channels = new Axis(), slices =
+		new Axis();
+
+	private final List<Location> files = new ArrayList<>();
+
+	/** Axis ids of each file. */
+	private int[] t = new int[16], c = new int[16], z = new int[16];
+
+	private int sizeZ, sizeC, sizeT;
+
+	/** Files in plane order, see {@link #getPlaneFiles()}. */
+	private List<Location> tiffs;
+
+	private int[] planeFiles;
+
+	/**
+	 * Scans the folder. Channels are ordered as in the given channel names if
+	 * they are all among them, otherwise alphabetically. Times and slices are
+	 * ordered by number.
+	 */
+	static TIFFNameScanner scan(final BrowsableLocation dir,
+		final String[] channelNames) throws IOException
+	{
+		final TIFFNameScanner scanner = new TIFFNameScanner();
+		if (dir instanceof FileLocation) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+				((FileLocation) dir).getFile().toPath()))
+			{
+				for (final Path path : stream) {
+					final String name = path.getFileName().toString();
+					if (isTIFF(name)) scanner.add(dir, name);
+				}
+			}
+		}
+		else {
+			for (final BrowsableLocation child : dir.children()) {
+				if (isTIFF(child.getName())) scanner.add(child, null);
+			}
+		}
+		scanner.layout(channelNames);
+		return scanner;
+	}
+
+	int getSizeZ() {
+		return sizeZ;
+	}
+
+	int getSizeC() {
+		return sizeC;
+	}
+
+	int getSizeT() {
+		return sizeT;
+	}
+
+	/** @return The files found, in plane order. */
+	List<Location> getTIFFs() {
+		return tiffs;
+	}
+
+	/**
+	 * @return The index into {@link #getTIFFs()} of each plane, -1 for planes
+	 *         without a file.
+	 */
+	int[] getPlaneFiles() {
+		return planeFiles;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Adds a file, given either as the location itself or as the folder and
+	 * the name. Names that do not have all axes are skipped.
+	 */
+	private void add(final BrowsableLocation location, final String name)
+		throws IOException
+	{
+		final String fileName = name == null ? location.getName() : name;
+		final String[] blocks = fileName.substring(0, fileName.lastIndexOf('.'))
+			.split("_");
+		if (blocks.length < 4) return;
+		final int i = files.size();
+		if (i == t.length) {
+			t = Arrays.copyOf(t, i * 2);
+			c = Arrays.copyOf(c, i * 2);
+			z = Arrays.copyOf(z, i * 2);
+		}
+		t[i] = times.id(blocks[1]);
+		c[i] = channels.id(blocks[2]);
+		z[i] = slices.id(blocks[3]);
+		files.add(name == null ? location : location.child(name));
+	}
+
+	private void layout(final String[] channelNames) {
+		final int[] timeRanks = times.rank(null);
+		final int[] channelRanks = channels.rank(channelNames);
+		final int[] sliceRanks = slices.rank(null);
+		sizeT = times.size();
+		sizeC = channels.size();
+		sizeZ = slices.size();
+
+		final long planes = (long) sizeZ * sizeC * sizeT;
+		if (planes > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Too many planes: " + planes);
+		}
+		final int[] fileOfPlane = new int[(int) planes];
+		Arrays.fill(fileOfPlane, -1);
+		for (int i = 0; i < files.size(); i++) {
+			fileOfPlane[sliceRanks[z[i]] + sizeZ * (channelRanks[c[i]] + sizeC *
+				timeRanks[t[i]])] = i;
+		}
+
+		tiffs = new ArrayList<>(files.size());
+		planeFiles = fileOfPlane;
+		for (int plane = 0; plane < planeFiles.length; plane++) {
+			final int file = planeFiles[plane];
+			if (file < 0) continue;
+			planeFiles[plane] = tiffs.size();
+			tiffs.add(files.get(file));
+		}
+	}
+
+	private static boolean isTIFF(final String name) {
+		final String lower = name.toLowerCase(Locale.ROOT);
+		return lower.endsWith(".tif") || lower.endsWith(".tiff");
+	}
+
+	/** Distinct values of one axis of the file names. */
+	private static final class Axis {
+
+		private final Map<String, Integer> ids = new HashMap<>();
+
+		private final List<String> values = new ArrayList<>();
+
+		private int id(final String value) {
+			Integer id = ids.get(value);
+			if (id == null) {
+				id = values.size();
+				ids.put(value, id);
+				values.add(value);
+			}
+			return id;
+		}
+
+		private int size() {
+			return values.size();
+		}
+
+		/**
+		 * @param order Names giving the order of the values, or null.
+		 * @return The rank of each id, by position in the given order if it has
+		 *         all values, else by number or, for names, alphabetically.
+		 */
+		private int[] rank(final String[] order) {
+			final Integer[] sorted = new Integer[values.size()];
+			for (int i = 0; i < sorted.length; i++)
+				sorted[i] = i;
+			Map<String, Integer> positions = null;
+			if (order != null) {
+				positions = new HashMap<>();
+				for (int i = 0; i < order.length; i++)
+					positions.putIfAbsent(order[i], i);
+				if (!positions.keySet().containsAll(values)) positions = null;
+			}
+			final Map<String, Integer> given = positions;
+			final Comparator<Integer> comparator = given != null ? Comparator
+				.comparingInt(i -> given.get(values.get(i))) : (a, b) -> compare(
+					values.get(a), values.get(b));
+			Arrays.sort(sorted, comparator);
+			final int[] ranks = new int[sorted.length];
+			for (int rank = 0; rank < sorted.length; rank++)
+				ranks[sorted[rank]] = rank;
+			return ranks;
+		}
+
+		private static int compare(final String a, final String b) {
+			final long x = number(a), y = number(b);
+			if (x >= 0 && y >= 0 && x != y) return Long.compare(x, y);
+			return a.compareTo(b);
+		}
+
+		/** @return The value as a number, or -1 if it is not all digits. */
+		private static long number(final String value) {
+			if (value.isEmpty() || value.length() > 18) return -1;
+			long number = 0;
+			for (int i = 0; i < value.length(); i++) {
+				final char ch = value.charAt(i);
+				if (ch < '0' || ch > '9') return -1;
+				number = number * 10 + ch - '0';
+			}
+			return number;
+		}
+	}
+}
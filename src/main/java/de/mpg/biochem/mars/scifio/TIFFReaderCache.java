@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.FormatException;
+import io.scif.config.SCIFIOConfig;
+import io.scif.formats.MinimalTIFFFormat;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.io.location.Location;
+
+/**
+ * Least recently used pool of TIFF readers, keyed by file. A reader holds the
+ * open {@link org.scijava.io.handle.DataHandle} and the parsed IFDs with their
+ * strip offsets, so planes of a file that was read recently are opened without
+ * parsing the header again. This matters for MM 1.4 datasets with one image
+ * per file, when scrubbing back and forth in a viewer or in repeated passes of
+ * an analysis.
+ * <p>
+ * Readers are checked out with {@link #acquire} and handed back with
+ * {@link #release}, so each one is used by a single thread at a time. Threads
+ * reading planes of the same file concurrently each get their own reader.
+ * Idle readers beyond the capacity are closed, least recently used first.
+ * </p>
+ *
+ * @author Karl Duderstadt
+ */
+class TIFFReaderCache {
+
+	/** Creates a new reader without a source. */
+	interface ReaderFactory {
+
+		MinimalTIFFFormat.Reader<?> create() throws FormatException;
+	}
+
+	private final ReaderFactory factory;
+
+	private final int capacity;
+
+	/** Idle readers of each file, in order of last use of the file. */
+	private final Map<Location, ArrayDeque<MinimalTIFFFormat.Reader<?>>> idle =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private int idleCount;
+
+	/** Checked out readers and their files. */
+	private final Map<MinimalTIFFFormat.Reader<?>, Location> inUse =
+		new IdentityHashMap<>();
+
+	private long hits, misses;
+
+	/**
+	 * @param capacity Maximum number of idle files kept open, at least 1.
+	 */
+	TIFFReaderCache(final ReaderFactory factory, final int capacity) {
+		this.factory = factory;
+		this.capacity = Math.max(1, capacity);
+	}
+
+	/**
+	 * Checks out a reader whose source is the given file. An idle reader of the
+	 * file is reused, otherwise a new one is opened, outside the lock so that
+	 * other threads are not held up by parsing the header. The reader must be
+	 * handed back with {@link #release}.
+	 */
+	MinimalTIFFFormat.Reader<?> acquire(final Location file,
+		final SCIFIOConfig config) throws FormatException, IOException
+	{
+		synchronized (this) {
+			final ArrayDeque<MinimalTIFFFormat.Reader<?>> readers = idle.get(file);
+			if (readers != null) {
+				final MinimalTIFFFormat.Reader<?> reader = readers.pop();
+				if (readers.isEmpty()) idle.remove(file);
+				idleCount--;
+				inUse.put(reader, file);
+				hits++;
+				return reader;
+			}
+			misses++;
+		}
+		final MinimalTIFFFormat.Reader<?> reader = factory.create();
+		try {
+			reader.setSource(file, config);
+		}
+		catch (final IOException | RuntimeException e) {
+			// corrupt or partially written file, do not leak its handle
+			try {
+				reader.close();
+			}
+			catch (final IOException closeError) {
+				e.addSuppressed(closeError);
+			}
+			throw e;
+		}
+		synchronized (this) {
+			inUse.put(reader, file);
+		}
+		return reader;
+	}
+
+	/**
+	 * Hands back a reader obtained from {@link #acquire}, keeping it open for
+	 * later use of its file. Readers acquired before {@link #clear()} are
+	 * closed instead.
+	 */
+	void release(final MinimalTIFFFormat.Reader<?> reader) throws IOException {
+		final List<MinimalTIFFFormat.Reader<?>> evicted = new ArrayList<>();
+		synchronized (this) {
+			final Location file = inUse.remove(reader);
+			if (file == null) evicted.add(reader);
+			else {
+				idle.computeIfAbsent(file, f -> new ArrayDeque<>()).push(reader);
+				idleCount++;
+				final Iterator<ArrayDeque<MinimalTIFFFormat.Reader<?>>> eldest = idle
+					.values().iterator();
+				while (idleCount > capacity) {
+					final ArrayDeque<MinimalTIFFFormat.Reader<?>> readers = eldest
+						.next();
+					while (idleCount > capacity && !readers.isEmpty()) {
+						evicted.add(readers.removeLast());
+						idleCount--;
+					}
+					if (readers.isEmpty()) eldest.remove();
+				}
+			}
+		}
+		close(evicted);
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Closes all idle readers and empties the cache. Readers that are checked
+	 * out are closed when they are released. The counts are kept.
+	 */
+	void clear() throws IOException {
+		final List<MinimalTIFFFormat.Reader<?>> open = new ArrayList<>();
+		synchronized (this) {
+			for (final ArrayDeque<MinimalTIFFFormat.Reader<?>> readers : idle
+				.values())
+				open.addAll(readers);
+			idle.clear();
+			idleCount = 0;
+			inUse.clear();
+		}
+		close(open);
+	}
+
+	private static void close(final List<MinimalTIFFFormat.Reader<?>> readers)
+		throws IOException
+	{
+		IOException error = null;
+		for (final MinimalTIFFFormat.Reader<?> reader : readers) {
+			try {
+				reader.close();
+			}
+			catch (final IOException e) {
+				if (error == null) error = e;
+			}
+		}
+		if (error != null) throw error;
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.FormatException;
+import io.scif.formats.tiff.IFD;
+import io.scif.formats.tiff.PhotoInterp;
+import io.scif.formats.tiff.TiffCompression;
+import io.scif.formats.tiff.TiffParser;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import net.imglib2.Interval;
+
+import org.scijava.Context;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.Location;
+
+/**
+ * Header layout of the first file of a series of single plane TIFF files, as
+ * written by Micro-Manager for each image of a dataset. The first file is
+ * parsed in full. Later files are checked against it by comparing the file
+ * header and the IFD entries describing the pixels, and if they match their
+ * pixels are read directly from the known offset without running the TIFF
+ * parser. Only uncompressed, single channel files with contiguous strips have
+ * a template, all other files are read the normal way.
+ *
+ * @author Karl Duderstadt
+ */
+class TIFFTemplate {
+
+	/**
+	 * Tags of the IFD entries describing the pixels, which must match when
+	 * present: size, bits per sample, compression, photometric interpretation,
+	 * strip offsets, samples per pixel and strip byte counts.
+	 */
+	private static final int[] CHECKED_TAGS = { 256, 257, 258, 259, 262, 273,
+		277, 279 };
+
+	private static final int STRIP_OFFSETS = 273, STRIP_BYTE_COUNTS = 279;
+
+	/** Byte order, magic number and offset of the first IFD. */
+	private final byte[] header;
+
+	private final long ifdOffset;
+
+	/** Entry count followed by all entries of the IFD. */
+	private final byte[] ifd;
+
+	/** Positions of the {@link #CHECKED_TAGS} entries in {@link #ifd}. */
+	private final int[] checked;
+
+	private final long pixelOffset;
+
+	private final int width, height, bytesPerPixel;
+
+	private TIFFTemplate(final byte[] header, final long ifdOffset,
+		final byte[] ifd, final int[] checked, final long pixelOffset,
+		final int width, final int height, final int bytesPerPixel)
+	{
+		this.header = header;
+		this.ifdOffset = ifdOffset;
+		this.ifd = ifd;
+		this.checked = checked;
+		this.pixelOffset = pixelOffset;
+		this.width = width;
+		this.height = height;
+		this.bytesPerPixel = bytesPerPixel;
+	}
+
+	/**
+	 * Parses the header of a TIFF file.
+	 *
+	 * @return The template, or null if the layout of the file has no fast path.
+	 */
+	static TIFFTemplate create(final Context context,
+		final DataHandle<Location> handle) throws IOException, FormatException
+	{
+		final byte[] header = new byte[8];
+		handle.seek(0);
+		handle.readFully(header);
+		final ByteBuffer buffer = ByteBuffer.wrap(header);
+		if (header[0] == 'I' && header[1] == 'I') buffer.order(
+			ByteOrder.LITTLE_ENDIAN);
+		else if (header[0] != 'M' || header[1] != 'M') return null;
+		// BigTIFF is not used for single planes
+		if (buffer.getShort(2) != 42) return null;
+		final long ifdOffset = buffer.getInt(4) & 0xffffffffL;
+
+		final TiffParser parser = new TiffParser(context, handle);
+		final long[] ifdOffsets = parser.getIFDOffsets();
+		if (ifdOffsets == null || ifdOffsets.length != 1 ||
+			ifdOffsets[0] != ifdOffset) return null;
+		final IFD first = parser.getFirstIFD();
+		if (first == null) return null;
+		parser.fillInIFD(first);
+
+		if (first.getCompression() != TiffCompression.UNCOMPRESSED || first
+			.isTiled() || first.getSamplesPerPixel() != 1 || first
+				.getFillOrder() != 1 || first
+					.getPhotometricInterpretation() == PhotoInterp.WHITE_IS_ZERO)
+		{
+			return null;
+		}
+		final int bits = first.getBitsPerSample()[0];
+		if (bits % 8 != 0) return null;
+		final int bytesPerPixel = bits / 8;
+		final long width = first.getImageWidth();
+		final long height = first.getImageLength();
+
+		// the strips must follow each other, so the plane is one block of bytes
+		final long[] offsets = first.getStripOffsets();
+		final long[] counts = first.getStripByteCounts();
+		if (offsets == null || counts == null || offsets.length != counts.length ||
+			offsets.length == 0) return null;
+		long size = 0;
+		for (int i = 0; i < offsets.length; i++) {
+			if (offsets[i] != offsets[0] + size) return null;
+			size += counts[i];
+		}
+		if (size != width * height * bytesPerPixel || size > Integer.MAX_VALUE) {
+			return null;
+		}
+
+		handle.seek(ifdOffset);
+		final byte[] count = new byte[2];
+		handle.readFully(count);
+		final int entries = ByteBuffer.wrap(count).order(buffer.order())
+			.getShort() & 0xffff;
+		final byte[] ifd = Arrays.copyOf(count, 2 + 12 * entries);
+		handle.readFully(ifd, 2, 12 * entries);
+
+		final ByteBuffer entryBuffer = ByteBuffer.wrap(ifd).order(buffer.order());
+		final int[] checked = new int[CHECKED_TAGS.length];
+		int found = 0;
+		boolean stripEntries = false;
+		for (int e = 0; e < entries; e++) {
+			final int tag = entryBuffer.getShort(2 + 12 * e) & 0xffff;
+			if (Arrays.binarySearch(CHECKED_TAGS, tag) >= 0) {
+				// a repeated tag, leave such files to the parser
+				if (found == checked.length) return null;
+				checked[found++] = 2 + 12 * e;
+				if (tag == STRIP_OFFSETS || tag == STRIP_BYTE_COUNTS) {
+					stripEntries = true;
+				}
+			}
+		}
+		if (!stripEntries) return null;
+
+		return new TIFFTemplate(header, ifdOffset, ifd, Arrays.copyOf(checked,
+			found), offsets[0],
+			(int) width, (int) height, bytesPerPixel);
+	}
+
+	/**
+	 * @return True if the file has the header layout of the template, so its
+	 *         pixels can be read with {@link #read}.
+	 */
+	boolean matches(final DataHandle<Location> handle) throws IOException {
+		if (handle.length() < pixelOffset + (long) width * height *
+			bytesPerPixel) return false;
+		final byte[] bytes = new byte[Math.max(header.length, ifd.length)];
+		handle.seek(0);
+		handle.readFully(bytes, 0, header.length);
+		if (!equal(bytes, header, 0, header.length)) return false;
+		handle.seek(ifdOffset);
+		handle.readFully(bytes, 0, ifd.length);
+		if (!equal(bytes, ifd, 0, 2)) return false;
+		for (final int entry : checked) {
+			if (!equal(bytes, ifd, entry, 12)) return false;
+		}
+		return true;
+	}
+
+	/** Reads the pixels within the bounds into buf, row by row. */
+	void read(final DataHandle<Location> handle, final byte[] buf,
+		final Interval bounds) throws IOException
+	{
+		readPixels(handle, pixelOffset, width, bytesPerPixel, buf, bounds);
+	}
+
+	/**
+	 * Reads the pixels within the bounds of a plane stored as one block of
+	 * bytes, row by row.
+	 */
+	static void readPixels(final DataHandle<Location> handle,
+		final long pixelOffset, final int width, final int bytesPerPixel,
+		final byte[] buf, final Interval bounds) throws IOException
+	{
+		final long x = bounds.min(0);
+		final long y = bounds.min(1);
+		final int rowLength = (int) bounds.dimension(0) * bytesPerPixel;
+		final int rows = (int) bounds.dimension(1);
+		if (x == 0 && bounds.dimension(0) == width) {
+			// whole rows are one block of bytes
+			handle.seek(pixelOffset + y * width * bytesPerPixel);
+			handle.readFully(buf, 0, rows * rowLength);
+			return;
+		}
+		for (int row = 0; row < rows; row++) {
+			handle.seek(pixelOffset + ((y + row) * width + x) * bytesPerPixel);
+			handle.readFully(buf, row * rowLength, rowLength);
+		}
+	}
+
+	/**
+	 * @return True if the mapped file has the header layout of the template,
+	 *         see {@link #matches(DataHandle)}.
+	 */
+	boolean matches(final ByteBuffer file) {
+		if (file.capacity() < pixelOffset + (long) width * height *
+			bytesPerPixel || file.capacity() < ifdOffset + ifd.length) return false;
+		for (int i = 0; i < header.length; i++) {
+			if (file.get(i) != header[i]) return false;
+		}
+		final int ifdStart = (int) ifdOffset;
+		if (file.get(ifdStart) != ifd[0] || file.get(ifdStart + 1) != ifd[1]) {
+			return false;
+		}
+		for (final int entry : checked) {
+			for (int i = entry; i < entry + 12; i++) {
+				if (file.get(ifdStart + i) != ifd[i]) return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the pixels within the bounds from the mapped file into buf, see
+	 * {@link #read(DataHandle, byte[], Interval)}.
+	 */
+	void read(final ByteBuffer file, final byte[] buf, final Interval bounds) {
+		readPixels(file, pixelOffset, width, bytesPerPixel, buf, bounds);
+	}
+
+	/**
+	 * Copies the pixels within the bounds of a plane stored as one block of
+	 * bytes from the mapped file into buf, row by row.
+	 */
+	static void readPixels(final ByteBuffer file, final long pixelOffset,
+		final int width, final int bytesPerPixel, final byte[] buf,
+		final Interval bounds)
+	{
+		final long x = bounds.min(0);
+		final long y = bounds.min(1);
+		final int rowLength = (int) bounds.dimension(0) * bytesPerPixel;
+		final int rows = (int) bounds.dimension(1);
+		if (x == 0 && bounds.dimension(0) == width) {
+			((Buffer) file).position((int) (pixelOffset + y * width * bytesPerPixel));
+			file.get(buf, 0, rows * rowLength);
+			return;
+		}
+		for (int row = 0; row < rows; row++) {
+			((Buffer) file).position((int) (pixelOffset + ((y + row) * width + x) *
+				bytesPerPixel));
+			file.get(buf, row * rowLength, rowLength);
+		}
+	}
+
+	/**
+	 * @return A read-only view of the pixels of the whole plane in the mapped
+	 *         file, without copying them, in the byte order of the file.
+	 */
+	ByteBuffer view(final ByteBuffer file) {
+		return view(file, pixelOffset, (long) width * height * bytesPerPixel,
+			header[0] == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * @return A read-only view of length bytes of the mapped file from the
+	 *         given offset, in the given byte order.
+	 */
+	static ByteBuffer view(final ByteBuffer file, final long offset,
+		final long length, final ByteOrder order)
+	{
+		final ByteBuffer view = file.duplicate();
+		((Buffer) view).position((int) offset);
+		((Buffer) view).limit((int) (offset + length));
+		return view.slice().order(order);
+	}
+
+	int getWidth() {
+		return width;
+	}
+
+	int getHeight() {
+		return height;
+	}
+
+	int getBytesPerPixel() {
+		return bytesPerPixel;
+	}
+
+	private static boolean equal(final byte[] a, final byte[] b, final int from,
+		final int length)
+	{
+		for (int i = from; i < from + length; i++) {
+			if (a[i] != b[i]) return false;
+		}
+		return true;
+	}
+}
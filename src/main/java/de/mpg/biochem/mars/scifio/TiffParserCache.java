@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import io.scif.formats.tiff.TiffParser;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.Context;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.handle.DataHandleService;
+import org.scijava.io.location.Location;
+
+/**
+ * Least recently used pool of open TIFF files, keyed by file. Unlike the
+ * readers of {@link TIFFReaderCache}, a parser only holds the open handle and
+ * does not parse any IFD up front. It is used to read planes of MMStack files
+ * at IFD offsets known from their {@link MMStackIndex}, and of NDTiff files at
+ * pixel offsets known from their {@link NDTiffIndex}, so opening a file costs
+ * the same no matter how many planes it holds. Single plane files read through
+ * their {@link TIFFTemplate} share the pool, so a file read again is not
+ * opened again.
+ * <p>
+ * Parsers are checked out with {@link #acquire} and handed back with
+ * {@link #release}, so each one is used by a single thread at a time. Idle
+ * parsers beyond the capacity are closed, least recently used first.
+ * </p>
+ *
+ * @author Karl Duderstadt
+ */
+class TiffParserCache {
+
+	private final Context context;
+
+	private final DataHandleService dataHandleService;
+
+	private final int capacity;
+
+	/** Idle parsers of each file, in order of last use of the file. */
+	private final Map<Location, ArrayDeque<TiffParser>> idle =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private int idleCount;
+
+	/** Checked out parsers and their files. */
+	private final Map<TiffParser, Location> inUse = new IdentityHashMap<>();
+
+	/**
+	 * @param capacity Maximum number of idle files kept open, at least 1.
+	 */
+	TiffParserCache(final Context context,
+		final DataHandleService dataHandleService, final int capacity)
+	{
+		this.context = context;
+		this.dataHandleService = dataHandleService;
+		this.capacity = Math.max(1, capacity);
+	}
+
+	/**
+	 * Checks out a parser of the given file, reusing an idle one if there is
+	 * any. The parser must be handed back with {@link #release}.
+	 */
+	TiffParser acquire(final Location file) throws IOException {
+		synchronized (this) {
+			final ArrayDeque<TiffParser> parsers = idle.get(file);
+			if (parsers != null) {
+				final TiffParser parser = parsers.pop();
+				if (parsers.isEmpty()) idle.remove(file);
+				idleCount--;
+				inUse.put(parser, file);
+				return parser;
+			}
+		}
+		final DataHandle<Location> handle = dataHandleService.create(file);
+		final TiffParser parser;
+		try {
+			parser = new TiffParser(context, handle);
+		}
+		catch (final RuntimeException e) {
+			handle.close();
+			throw e;
+		}
+		synchronized (this) {
+			inUse.put(parser, file);
+		}
+		return parser;
+	}
+
+	/**
+	 * Hands back a parser obtained from {@link #acquire}, keeping its file open
+	 * for later use. Parsers acquired before {@link #clear()} are closed
+	 * instead.
+	 */
+	void release(final TiffParser parser) throws IOException {
+		final List<TiffParser> evicted = new ArrayList<>();
+		synchronized (this) {
+			final Location file = inUse.remove(parser);
+			if (file == null) evicted.add(parser);
+			else {
+				idle.computeIfAbsent(file, f -> new ArrayDeque<>()).push(parser);
+				idleCount++;
+				final Iterator<ArrayDeque<TiffParser>> eldest = idle.values()
+					.iterator();
+				while (idleCount > capacity) {
+					final ArrayDeque<TiffParser> parsers = eldest.next();
+					while (idleCount > capacity && !parsers.isEmpty()) {
+						evicted.add(parsers.removeLast());
+						idleCount--;
+					}
+					if (parsers.isEmpty()) eldest.remove();
+				}
+			}
+		}
+		close(evicted);
+	}
+
+	/**
+	 * Closes all idle parsers and empties the cache. Parsers that are checked
+	 * out are closed when they are released.
+	 */
+	void clear() throws IOException {
+		final List<TiffParser> open = new ArrayList<>();
+		synchronized (this) {
+			for (final ArrayDeque<TiffParser> parsers : idle.values())
+				open.addAll(parsers);
+			idle.clear();
+			idleCount = 0;
+			inUse.clear();
+		}
+		close(open);
+	}
+
+	private static void close(final List<TiffParser> parsers)
+		throws IOException
+	{
+		IOException error = null;
+		for (final TiffParser parser : parsers) {
+			try {
+				parser.getStream().close();
+			}
+			catch (final IOException e) {
+				if (error == null) error = e;
+			}
+		}
+		if (error != null) throw error;
+	}
+}
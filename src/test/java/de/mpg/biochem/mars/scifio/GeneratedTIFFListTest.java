@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link GeneratedTIFFList}.
+ *
+ * @author Karl Duderstadt
+ */
+public class GeneratedTIFFListTest {
+
+	private static final String[] CHANNELS = { "Cy3", "Cy5_far" };
+
+	@Test
+	public void testMV1Names() {
+		final GeneratedTIFFList tiffs = GeneratedTIFFList.mv1(null,
+			"img_000000000_Cy3_000.tif", CHANNELS, false, 3, 2).withFrames(2);
+		assertEquals(12, tiffs.size());
+		// z fastest, then channel, then time
+		assertEquals("img_000000000_Cy3_000.tif", tiffs.getName(0));
+		assertEquals("img_000000000_Cy3_002.tif", tiffs.getName(2));
+		assertEquals("img_000000000_Cy5_far_001.tif", tiffs.getName(4));
+		assertEquals("img_000000001_Cy5_far_002.tif", tiffs.getName(11));
+		roundTrip(tiffs);
+	}
+
+	@Test
+	public void testMV1Swapped() {
+		// with Z and TIME swapped the slice is in the place of the frame
+		final GeneratedTIFFList tiffs = GeneratedTIFFList.mv1(null,
+			"img_000000000_Cy3_000.tif", CHANNELS, true, 3, 2).withFrames(2);
+		assertEquals("img_000000002_Cy3_000.tif", tiffs.getName(2));
+		assertEquals("img_000000002_Cy5_far_001.tif", tiffs.getName(11));
+		roundTrip(tiffs);
+		assertEquals(2, tiffs.indexOfName("img_000000002_Cy3_000.tif"));
+		assertEquals(-1, tiffs.indexOfName("img_000000000_Cy3_002.tif"));
+	}
+
+	@Test
+	public void testMV1Padding() {
+		// padding follows the first file name, longer numbers are not cut
+		final GeneratedTIFFList tiffs = GeneratedTIFFList.mv1(null,
+			"img_00_Cy3_0.tif", CHANNELS, false, 12, 1).withFrames(150);
+		assertEquals("img_00_Cy3_0.tif", tiffs.getName(0));
+		assertEquals("img_00_Cy3_11.tif", tiffs.getName(11));
+		assertEquals("img_05_Cy3_3.tif", tiffs.getName(5 * 12 + 3));
+		assertEquals("img_149_Cy3_0.tif", tiffs.getName(149 * 12));
+		roundTrip(tiffs);
+		// the same numbers with other padding are other files
+		assertEquals(-1, tiffs.indexOfName("img_5_Cy3_3.tif"));
+		assertEquals(-1, tiffs.indexOfName("img_05_Cy3_03.tif"));
+	}
+
+	@Test
+	public void testMV2Names() {
+		final GeneratedTIFFList tiffs = GeneratedTIFFList.mv2(null, "img", 4, 2,
+			3).withFrames(5);
+		assertEquals(30, tiffs.size());
+		assertEquals("img_channel000_position004_time000000000_z000.tif", tiffs
+			.getName(0));
+		assertEquals("img_channel002_position004_time000000004_z001.tif", tiffs
+			.getName(29));
+		roundTrip(tiffs);
+		assertEquals(-1, tiffs.indexOfName(
+			"img_channel000_position004_time000000005_z000.tif"));
+		assertEquals(-1, tiffs.indexOfName(
+			"img_channel003_position004_time000000000_z000.tif"));
+	}
+
+	@Test
+	public void testForeignNames() {
+		final GeneratedTIFFList tiffs = GeneratedTIFFList.mv1(null,
+			"img_000000000_Cy3_000.tif", CHANNELS, false, 3, 2).withFrames(2);
+		assertEquals(-1, tiffs.indexOfName("other_000000000_Cy3_000.tif"));
+		assertEquals(-1, tiffs.indexOfName("img_000000000_GFP_000.tif"));
+		assertEquals(-1, tiffs.indexOfName("img_000000000_Cy3_000.tiff"));
+		assertEquals(-1, tiffs.indexOfName("img_000000000_Cy3_003.tif"));
+		assertEquals(-1, tiffs.indexOfName("img_99999999999_Cy3_000.tif"));
+		assertEquals(-1, tiffs.indexOfName("metadata.txt"));
+	}
+
+	@Test
+	public void testFrames() {
+		final GeneratedTIFFList tiffs = GeneratedTIFFList.mv2(null, "img", 0, 1,
+			1);
+		assertEquals(0, tiffs.size());
+		assertThrows(IndexOutOfBoundsException.class, () -> tiffs.getName(0));
+		final GeneratedTIFFList three = tiffs.withFrames(3);
+		assertEquals(3, three.size());
+		assertEquals(2, three.indexOfName(three.getName(2)));
+		// the list a reader holds on to does not change
+		assertEquals(0, tiffs.size());
+		assertEquals(-1, three.withFrames(2).indexOfName(
+			"img_channel000_position000_time000000002_z000.tif"));
+		assertEquals(3, three.size());
+	}
+
+	@Test
+	public void testTemplate() {
+		final GeneratedTIFFList tiffs = GeneratedTIFFList.mv1(null,
+			"img_000000000_Cy3_000.tif", CHANNELS, false, 3, 2).withFrames(2);
+		// the number of frames does not matter
+		assertTrue(tiffs.hasTemplateOf(GeneratedTIFFList.mv1(null,
+			"img_000000001_Cy3_002.tif", CHANNELS.clone(), false, 3, 2)));
+		assertFalse(tiffs.hasTemplateOf(GeneratedTIFFList.mv1(null,
+			"img_000000000_Cy3_000.tif", CHANNELS, true, 3, 2)));
+		assertFalse(tiffs.hasTemplateOf(GeneratedTIFFList.mv1(null,
+			"img_0_Cy3_000.tif", CHANNELS, false, 3, 2)));
+		assertFalse(tiffs.hasTemplateOf(GeneratedTIFFList.mv1(null,
+			"img_000000000_Cy3_000.tif", CHANNELS, false, 2, 2)));
+		assertFalse(GeneratedTIFFList.mv2(null, "img", 0, 3, 2).hasTemplateOf(
+			GeneratedTIFFList.mv2(null, "img", 1, 3, 2)));
+	}
+
+	private static void roundTrip(final GeneratedTIFFList tiffs) {
+		for (int i = 0; i < tiffs.size(); i++)
+			assertEquals(i, tiffs.indexOfName(tiffs.getName(i)), tiffs.getName(i));
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.scijava.Context;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.handle.DataHandleService;
+import org.scijava.io.location.BytesLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Tests {@link MetadataTokenizer}.
+ *
+ * @author Karl Duderstadt
+ */
+public class MetadataTokenizerTest {
+
+	/** Size of the initial buffer of the tokenizer. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	@Test
+	public void testLF() throws IOException {
+		final byte[] bytes = bytes("a\nbb\n\nccc");
+		try (Tokenizer st = new Tokenizer(bytes)) {
+			assertEquals("a", st.tokenizer.nextToken());
+			assertEquals(0, st.tokenizer.tokenOffset());
+			assertEquals(2, st.tokenizer.position());
+			assertEquals("bb", st.tokenizer.nextToken());
+			assertEquals(2, st.tokenizer.tokenOffset());
+			assertEquals(5, st.tokenizer.position());
+			// the empty line is skipped
+			assertEquals("ccc", st.tokenizer.nextToken());
+			assertEquals(6, st.tokenizer.tokenOffset());
+			assertEquals(bytes.length, st.tokenizer.position());
+			assertFalse(st.tokenizer.hasMoreTokens());
+			assertThrows(EOFException.class, () -> st.tokenizer.nextToken());
+		}
+	}
+
+	@Test
+	public void testCRLF() throws IOException {
+		// like a StringTokenizer on newlines, the carriage return stays with the
+		// line and is removed by the trim of the parser
+		final byte[] bytes = bytes("{\r\n  \"Key\": \"value\",\r\n\r\n}\r\n");
+		try (Tokenizer st = new Tokenizer(bytes)) {
+			assertEquals("{", st.tokenizer.nextToken().trim());
+			assertEquals(0, st.tokenizer.tokenOffset());
+			assertEquals(3, st.tokenizer.position());
+			assertEquals("\"Key\": \"value\",", st.tokenizer.nextToken().trim());
+			assertEquals(3, st.tokenizer.tokenOffset());
+			assertEquals(22, st.tokenizer.position());
+			// a line of only a carriage return is not empty
+			assertEquals("\r", st.tokenizer.nextToken());
+			assertEquals(22, st.tokenizer.tokenOffset());
+			assertEquals("}\r", st.tokenizer.nextToken());
+			assertEquals(24, st.tokenizer.tokenOffset());
+			assertEquals(bytes.length, st.tokenizer.position());
+			assertFalse(st.tokenizer.hasMoreTokens());
+		}
+	}
+
+	@Test
+	public void testLineLongerThanBuffer() throws IOException {
+		final char[] line = new char[BUFFER_SIZE * 3 + 17];
+		Arrays.fill(line, 'x');
+		final String longLine = new String(line);
+		final byte[] bytes = bytes("first\n" + longLine + "\nlast\n");
+		try (Tokenizer st = new Tokenizer(bytes)) {
+			assertEquals("first", st.tokenizer.nextToken());
+			assertEquals(longLine, st.tokenizer.nextToken());
+			assertEquals(6, st.tokenizer.tokenOffset());
+			assertEquals(6 + longLine.length() + 1, st.tokenizer.position());
+			assertEquals("last", st.tokenizer.nextToken());
+			assertEquals(6 + longLine.length() + 1, st.tokenizer.tokenOffset());
+			assertFalse(st.tokenizer.hasMoreTokens());
+		}
+	}
+
+	@Test
+	public void testMultiByteCharacterAcrossRefill() throws IOException {
+		// the first line ends just before the end of the first buffer, so the
+		// three bytes of the euro sign of the second line straddle the refill
+		final char[] filler = new char[BUFFER_SIZE - 3];
+		Arrays.fill(filler, 'a');
+		final String first = new String(filler);
+		final String second = "\u20ac\u00e9\u20ac end";
+		final byte[] bytes = bytes(first + "\n" + second + "\nnext\n");
+		assertTrue(first.length() + 1 < BUFFER_SIZE && first.length() + 1 +
+			3 > BUFFER_SIZE);
+		try (Tokenizer st = new Tokenizer(bytes)) {
+			assertEquals(first, st.tokenizer.nextToken());
+			assertEquals(second, st.tokenizer.nextToken());
+			assertEquals(first.length() + 1, st.tokenizer.tokenOffset());
+			final int secondEnd = first.length() + 1 + second.getBytes(
+				StandardCharsets.UTF_8).length + 1;
+			assertEquals(secondEnd, st.tokenizer.position());
+			assertEquals("next", st.tokenizer.nextToken());
+			assertEquals(secondEnd, st.tokenizer.tokenOffset());
+		}
+	}
+
+	@Test
+	public void testTruncatedLastLine() throws IOException {
+		final byte[] bytes = bytes("a\nbcd");
+		try (Tokenizer st = new Tokenizer(bytes)) {
+			st.tokenizer.setCompleteLinesOnly(true);
+			assertEquals("a", st.tokenizer.nextToken());
+			assertFalse(st.tokenizer.hasMoreTokens());
+			// the partial line is where reading resumes once it is complete
+			assertEquals(2, st.tokenizer.position());
+		}
+		try (Tokenizer st = new Tokenizer(bytes)) {
+			assertEquals("a", st.tokenizer.nextToken());
+			assertEquals("bcd", st.tokenizer.nextToken());
+			assertEquals(2, st.tokenizer.tokenOffset());
+			assertEquals(5, st.tokenizer.position());
+		}
+	}
+
+	@Test
+	public void testOffsetAndLimit() throws IOException {
+		final byte[] bytes = bytes("skip\nb1\nb2\nafter\n");
+		try (Tokenizer st = new Tokenizer(bytes, 5, 11)) {
+			assertEquals("b1", st.tokenizer.nextToken());
+			assertEquals(5, st.tokenizer.tokenOffset());
+			assertEquals("b2", st.tokenizer.nextToken());
+			assertEquals(8, st.tokenizer.tokenOffset());
+			assertEquals(11, st.tokenizer.position());
+			assertFalse(st.tokenizer.hasMoreTokens());
+		}
+	}
+
+	private static byte[] bytes(final String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/** A tokenizer over bytes, with the context it needs for its handle. */
+	private static class Tokenizer implements AutoCloseable {
+
+		private final Context context = new Context(DataHandleService.class);
+
+		private final DataHandle<Location> handle;
+
+		private final MetadataTokenizer tokenizer;
+
+		private Tokenizer(final byte[] bytes) throws IOException {
+			this(bytes, 0, -1);
+		}
+
+		private Tokenizer(final byte[] bytes, final long offset, final long limit)
+			throws IOException
+		{
+			handle = context.getService(DataHandleService.class).create(
+				new BytesLocation(bytes));
+			tokenizer = new MetadataTokenizer(handle, offset, limit);
+		}
+
+		@Override
+		public void close() throws IOException {
+			handle.close();
+			context.dispose();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.scif.FormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.scijava.Context;
+import org.scijava.io.handle.DataHandleService;
+import org.scijava.io.location.BytesLocation;
+
+/**
+ * Tests {@link NDTiffIndex}.
+ *
+ * @author Karl Duderstadt
+ */
+public class NDTiffIndexTest {
+
+	@Test
+	public void testParseAxes() {
+		final Map<String, Object> expected = new LinkedHashMap<>();
+		expected.put("channel", "DAPI");
+		expected.put("z", 3);
+		expected.put("time", -1);
+		expected.put("position", 0);
+		assertEquals(expected, NDTiffIndex.parseAxes(
+			"{\"channel\":\"DAPI\",\"z\":3,\"time\":-1,\"position\":0}"));
+		assertEquals(expected, NDTiffIndex.parseAxes(
+			" { \"channel\" : \"DAPI\" ,\n \"z\" : 3 , \"time\":-1,\"position\" :0 } "));
+		assertEquals(new LinkedHashMap<>(), NDTiffIndex.parseAxes("{}"));
+	}
+
+	@Test
+	public void testParseAxesValues() {
+		final Map<String, Object> values = NDTiffIndex.parseAxes(
+			"{\"a\":1.5,\"b\":\"2\",\"c\":null,\"d\":\"x\\\"y\\\\z\",\"e\":\"tab\\there\\u00e9\"}");
+		// only integers are numbers, everything else is a name
+		assertEquals("1.5", values.get("a"));
+		assertEquals("2", values.get("b"));
+		assertEquals("null", values.get("c"));
+		assertEquals("x\"y\\z", values.get("d"));
+		assertEquals("tab\there\u00e9", values.get("e"));
+	}
+
+	@Test
+	public void testParseAxesInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> NDTiffIndex.parseAxes(
+			"[1]"));
+		assertThrows(IllegalArgumentException.class, () -> NDTiffIndex.parseAxes(
+			"{\"z\" 1}"));
+		assertThrows(IllegalArgumentException.class, () -> NDTiffIndex.parseAxes(
+			"{\"z"));
+		assertThrows(IllegalArgumentException.class, () -> NDTiffIndex.parseAxes(
+			"{\"z\\u00\":1}"));
+	}
+
+	@Test
+	public void testLayout() throws IOException, FormatException {
+		final Index index = new Index();
+		// channel names keep the order they appear in, numbers are sorted
+		index.add("{\"channel\":\"GFP\",\"z\":2,\"time\":0,\"position\":1}",
+			"a.tif", 100);
+		index.add("{\"channel\":\"DAPI\",\"z\":0,\"time\":0,\"position\":1}",
+			"a.tif", 200);
+		index.add("{\"channel\":\"GFP\",\"z\":0,\"time\":1,\"position\":1}",
+			"b.tif", 300);
+		index.add("{\"channel\":\"DAPI\",\"z\":2,\"time\":1,\"position\":0}",
+			"b.tif", 400);
+		final NDTiffIndex read = index.read(false);
+
+		assertEquals(2, read.getImageCount());
+		assertEquals(2, read.getSizeZ());
+		assertEquals(2, read.getSizeC());
+		assertEquals(2, read.getSizeT());
+		assertEquals(4, read.getWidth());
+		assertEquals(3, read.getHeight());
+		assertEquals(12, read.getBitsPerPixel());
+		assertArrayEquals(new String[] { "GFP", "DAPI" }, read.getChannelNames());
+		assertEquals(Arrays.asList("a.tif", "b.tif"), read.getFileNames());
+
+		// position 1 appeared first
+		final int[] files = new int[8];
+		final long[] offsets = new long[8];
+		final StringBuilder planes = new StringBuilder();
+		read.fill(0, files, offsets, (z, c, t) -> planes.append(z).append(c)
+			.append(t).append(' '));
+		assertEquals("100 010 001 ", planes.toString());
+		assertArrayEquals(new int[] { -1, 0, 0, -1, 1, -1, -1, -1 }, files);
+		assertArrayEquals(new long[] { -1, 100, 200, -1, 300, -1, -1, -1 },
+			offsets);
+		read.fill(1, files, offsets, (z, c, t) -> {});
+		assertArrayEquals(new long[] { -1, -1, -1, -1, -1, -1, -1, 400 },
+			offsets);
+
+		// planes the table has no room for are skipped
+		final StringBuilder skipped = new StringBuilder();
+		read.fill(1, new int[4], new long[4], (z, c, t) -> skipped.append(z));
+		assertEquals("", skipped.toString());
+	}
+
+	@Test
+	public void testTruncatedEntry() throws IOException, FormatException {
+		final Index index = new Index();
+		index.add("{\"time\":0}", "a.tif", 100);
+		index.add("{\"time\":1}", "a.tif", 200);
+		final NDTiffIndex read = index.read(true);
+		assertEquals(1, read.getSizeT());
+		assertEquals(1, read.getSizeZ());
+		assertEquals(1, read.getSizeC());
+	}
+
+	@Test
+	public void testIsIndex() throws IOException {
+		assertTrue(NDTiffIndex.isIndex("NDTiff.index"));
+		assertFalse(NDTiffIndex.isIndex("NDTiff.index.bak"));
+		assertTrue(NDTiffIndex.isIndex("/data/acquisition/NDTiff.index"));
+		assertTrue(NDTiffIndex.isIndex("C:\\acquisition\\NDTiff.index"));
+		assertFalse(NDTiffIndex.isIndex("/data/my_NDTiff.index"));
+	}
+
+	/** Writes index entries of 4 x 3 pixel, 12 bit images. */
+	private static class Index {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		private void add(final String axes, final String file,
+			final int pixelOffset)
+		{
+			final byte[] axesBytes = axes.getBytes(StandardCharsets.UTF_8);
+			final byte[] fileBytes = file.getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer entry = ByteBuffer.allocate(4 + axesBytes.length + 4 +
+				fileBytes.length + 4 * 8).order(ByteOrder.LITTLE_ENDIAN);
+			entry.putInt(axesBytes.length).put(axesBytes);
+			entry.putInt(fileBytes.length).put(fileBytes);
+			entry.putInt(pixelOffset).putInt(4).putInt(3).putInt(4).putInt(0);
+			entry.putInt(pixelOffset + 24).putInt(10).putInt(0);
+			bytes.write(entry.array(), 0, entry.capacity());
+		}
+
+		/**
+		 * @param truncate If true, the last entry is cut short as by a running
+		 *          acquisition.
+		 */
+		private NDTiffIndex read(final boolean truncate) throws IOException,
+			FormatException
+		{
+			byte[] data = bytes.toByteArray();
+			if (truncate) data = Arrays.copyOf(data, data.length - 10);
+			final Context context = new Context(DataHandleService.class);
+			try {
+				return NDTiffIndex.read(context.getService(DataHandleService.class),
+					new BytesLocation(data));
+			}
+			finally {
+				context.dispose();
+			}
+		}
+	}
+}
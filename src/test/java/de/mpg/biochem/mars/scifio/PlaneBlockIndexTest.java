@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PlaneBlockIndex}.
+ *
+ * @author Karl Duderstadt
+ */
+public class PlaneBlockIndexTest {
+
+	@Test
+	public void testLargestPlane() {
+		final PlaneBlockIndex index = new PlaneBlockIndex();
+		final int slot = index.put(0xffff, 0xffff, Integer.MAX_VALUE, 10, 20);
+		assertEquals(slot, index.getSlot(0xffff, 0xffff, Integer.MAX_VALUE));
+		assertEquals(0xffff, index.getZ(slot));
+		assertEquals(0xffff, index.getC(slot));
+		assertEquals(Integer.MAX_VALUE, index.getT(slot));
+	}
+
+	@Test
+	public void testOutOfRange() {
+		final PlaneBlockIndex index = new PlaneBlockIndex();
+		index.put(0, 0, 0, 0, 1);
+		// z and c would wrap onto other planes
+		assertThrows(IllegalArgumentException.class, () -> index.put(0x10000, 0,
+			0, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> index.put(0, 0x10000,
+			0, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> index.put(-1, 0, 0, 1,
+			1));
+		assertThrows(IllegalArgumentException.class, () -> index.put(0, 0, -1, 1,
+			1));
+		assertEquals(1, index.size());
+		assertEquals(0, index.getOffset(index.getSlot(0, 0, 0)));
+		assertEquals(-1, index.getSlot(0x10000, 0, 0));
+	}
+
+	@Test
+	public void testReplace() {
+		final PlaneBlockIndex index = new PlaneBlockIndex();
+		for (int t = 0; t < 100; t++)
+			index.put(1, 2, t, t, 1);
+		final int slot = index.put(1, 2, 5, 500, 7);
+		assertEquals(100, index.size());
+		assertEquals(slot, index.getSlot(1, 2, 5));
+		assertEquals(500, index.getOffset(slot));
+		assertEquals(7, index.getLength(slot));
+		assertEquals(99, index.getMaxT());
+	}
+}
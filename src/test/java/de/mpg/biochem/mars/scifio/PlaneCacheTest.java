@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PlaneCache}.
+ *
+ * @author Karl Duderstadt
+ */
+public class PlaneCacheTest {
+
+	@Test
+	public void testRoundTrip() {
+		for (final boolean compress : new boolean[] { false, true }) {
+			final PlaneCache cache = new PlaneCache(1 << 20, compress, false);
+			final byte[] plane = new byte[1000];
+			for (int i = 0; i < plane.length; i++)
+				plane[i] = (byte) (i / 7);
+			cache.put(0, 3, plane, 2);
+			final byte[] buf = new byte[plane.length];
+			assertTrue(cache.get(0, 3, buf));
+			assertArrayEquals(plane, buf);
+			assertFalse(cache.get(0, 4, buf));
+			assertEquals(1, cache.getHits());
+			assertEquals(1, cache.getMisses());
+		}
+	}
+
+	@Test
+	public void testLengthMismatch() {
+		for (final boolean compress : new boolean[] { false, true }) {
+			final PlaneCache cache = new PlaneCache(1 << 20, compress, false);
+			cache.put(0, 0, new byte[1000], 2);
+			// a plane of another size is a miss, and the stale plane is dropped
+			assertFalse(cache.get(0, 0, new byte[500]));
+			assertEquals(0, cache.getHits());
+			assertEquals(1, cache.getMisses());
+			assertFalse(cache.get(0, 0, new byte[1000]));
+			assertEquals(2, cache.getMisses());
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PlaneMetadataStore}.
+ *
+ * @author Karl Duderstadt
+ */
+public class PlaneMetadataStoreTest {
+
+	@Test
+	public void testNumericColumn() {
+		final PlaneMetadataStore store = roundTrip("0", "100", "-3", "42");
+		assertEquals(-3, store.getDouble(2, "K"), 0);
+		roundTrip("0.0", "1.5", "-2.25", "1.0E-5", "123.456");
+	}
+
+	@Test
+	public void testIntegralAndDecimalText() {
+		// "1.0" and "1" are the same number but not the same text
+		roundTrip("1", "2", "1.0", "3");
+		roundTrip("1.0", "2.5", "1", "3.0");
+		final PlaneMetadataStore store = roundTrip("5", "5.0");
+		assertEquals(5, store.getDouble(1, "K"), 0);
+	}
+
+	@Test
+	public void testNegativeZero() {
+		roundTrip("0", "-0", "1");
+		roundTrip("-0", "0");
+		roundTrip("0.0", "-0.0", "1.5");
+	}
+
+	@Test
+	public void testNotANumber() {
+		final PlaneMetadataStore store = roundTrip("1.5", "NaN", "2.5",
+			"Infinity", "-Infinity");
+		assertTrue(Double.isNaN(store.getDouble(1, "K")));
+		assertEquals(2.5, store.getDouble(2, "K"), 0);
+		roundTrip("NaN", "1");
+	}
+
+	@Test
+	public void testValuesThatStopBeingNumeric() {
+		roundTrip("12", "12abc", "13");
+		roundTrip("1", "2", "3", "Andor");
+		roundTrip("1.5", "1.5 um", "1.5");
+		// parsed as numbers by Java, but written differently
+		roundTrip("7", "007", "1d", "2f", " 3", "1e5", "0x10", "+4");
+		final PlaneMetadataStore store = roundTrip("10", "ten");
+		assertEquals(10, store.getDouble(0, "K"), 0);
+		assertTrue(Double.isNaN(store.getDouble(1, "K")));
+	}
+
+	@Test
+	public void testMissingValues() {
+		final PlaneMetadataStore store = new PlaneMetadataStore();
+		store.put(0, "A", "1");
+		store.put(2, "B", "x");
+		store.addRow(5);
+		assertNull(store.get(1, "A"));
+		assertNull(store.get(0, "B"));
+		assertNull(store.get(0, "C"));
+		assertTrue(Double.isNaN(store.getDouble(2, "A")));
+		assertFalse(store.hasRow(1));
+		assertNull(store.getPlaneMap(1));
+		assertTrue(store.getPlaneMap(5).isEmpty());
+		assertEquals(Arrays.asList("A", "B"), store.getKeys());
+	}
+
+	@Test
+	public void testRowViewEquality() {
+		final PlaneMetadataStore store = new PlaneMetadataStore();
+		final Map<String, String> first = new LinkedHashMap<>();
+		first.put("Camera", "Andor");
+		first.put("ElapsedTime-ms", "100.5");
+		first.put("Slice", "0");
+		final Map<String, String> second = new LinkedHashMap<>();
+		second.put("Camera", "Andor");
+		second.put("Slice", "1");
+		second.put("Comment", "drift");
+		store.putAll(0, first);
+		store.putAll(1, second);
+
+		final Map<String, String> view = store.getPlaneMap(0);
+		assertEquals(new HashMap<>(first), view);
+		assertEquals(view, new HashMap<>(first));
+		assertEquals(new HashMap<>(first).hashCode(), view.hashCode());
+		assertEquals(3, view.size());
+		assertTrue(view.containsKey("Slice"));
+		assertFalse(view.containsKey("Comment"));
+		assertEquals(new HashMap<>(second), store.getPlaneMap(1));
+
+		// replacing a row drops the properties it no longer has
+		store.putAll(0, second);
+		assertEquals(new HashMap<>(second), store.getPlaneMap(0));
+		store.removeRow(0);
+		assertNull(store.getPlaneMap(0));
+		assertEquals(new HashMap<>(second), store.getPlaneMap(1));
+	}
+
+	@Test
+	public void testGrowth() {
+		final PlaneMetadataStore store = new PlaneMetadataStore();
+		for (int row = 0; row < 1000; row++) {
+			store.put(row, "Index", String.valueOf(row));
+			store.put(row, "Name", "plane" + row % 3);
+		}
+		for (int row = 0; row < 1000; row++) {
+			assertEquals(String.valueOf(row), store.get(row, "Index"));
+			assertEquals("plane" + row % 3, store.get(row, "Name"));
+		}
+	}
+
+	/**
+	 * Puts the values into consecutive rows of one column and checks that each
+	 * reads back as exactly the same text.
+	 */
+	private static PlaneMetadataStore roundTrip(final String... values) {
+		final PlaneMetadataStore store = new PlaneMetadataStore();
+		for (int row = 0; row < values.length; row++)
+			store.put(row, "K", values[row]);
+		for (int row = 0; row < values.length; row++)
+			assertEquals(values[row], store.get(row, "K"), "row " + row + " of " +
+				Arrays.toString(values));
+		return store;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PlaneTimeline}.
+ *
+ * @author Karl Duderstadt
+ */
+public class PlaneTimelineTest {
+
+	private static final double NaN = Double.NaN;
+
+	/**
+	 * Plane 1 has no time, planes 2 and 3 were written out of order and planes
+	 * 4 and 5 share a time.
+	 */
+	private final PlaneTimeline timeline = new PlaneTimeline(new double[] { 0,
+		NaN, 0.5, 0.25, 1, 1 });
+
+	@Test
+	public void testTimes() {
+		assertEquals(6, timeline.getPlaneCount());
+		assertEquals(5, timeline.getTimedPlaneCount());
+		assertEquals(0.25, timeline.getTime(3), 0);
+		assertTrue(Double.isNaN(timeline.getTime(1)));
+		assertTrue(Double.isNaN(timeline.getTime(-1)));
+		assertTrue(Double.isNaN(timeline.getTime(6)));
+	}
+
+	@Test
+	public void testNearestPlane() {
+		// before the first and after the last plane
+		assertEquals(0, timeline.getNearestPlane(-10));
+		assertEquals(4, timeline.getNearestPlane(10));
+		// exact times, out of plane order
+		assertEquals(0, timeline.getNearestPlane(0));
+		assertEquals(3, timeline.getNearestPlane(0.25));
+		assertEquals(2, timeline.getNearestPlane(0.5));
+		assertEquals(2, timeline.getNearestPlane(0.6));
+		assertEquals(3, timeline.getNearestPlane(0.2));
+		// ties go to the earlier plane
+		assertEquals(3, timeline.getNearestPlane(0.375));
+		assertEquals(2, timeline.getNearestPlane(0.75));
+		assertEquals(4, timeline.getNearestPlane(0.9));
+		assertEquals(4, timeline.getNearestPlane(1));
+	}
+
+	@Test
+	public void testEnclosingPlane() {
+		assertEquals(-1, timeline.getEnclosingPlane(-0.1));
+		assertEquals(0, timeline.getEnclosingPlane(0));
+		assertEquals(0, timeline.getEnclosingPlane(0.1));
+		assertEquals(3, timeline.getEnclosingPlane(0.25));
+		assertEquals(3, timeline.getEnclosingPlane(0.49));
+		assertEquals(2, timeline.getEnclosingPlane(0.99));
+		// the last of the planes acquired at the same time
+		assertEquals(5, timeline.getEnclosingPlane(1));
+		assertEquals(5, timeline.getEnclosingPlane(10));
+	}
+
+	@Test
+	public void testNoTimes() {
+		final PlaneTimeline empty = new PlaneTimeline(new double[] { NaN, NaN });
+		assertEquals(0, empty.getTimedPlaneCount());
+		assertEquals(-1, empty.getNearestPlane(0));
+		assertEquals(-1, empty.getEnclosingPlane(0));
+		assertEquals(-1, new PlaneTimeline(new double[0]).getNearestPlane(0));
+	}
+
+	@Test
+	public void testShuffledTimes() {
+		final Random random = new Random(42);
+		final double[] times = new double[500];
+		for (int plane = 0; plane < times.length; plane++)
+			times[plane] = random.nextInt(10) == 0 ? NaN : random.nextInt(200) / 4.0;
+		final PlaneTimeline shuffled = new PlaneTimeline(times);
+		for (double seconds = -1; seconds < 51; seconds += 0.125) {
+			assertEquals(nearest(times, seconds), shuffled.getNearestPlane(seconds),
+				"nearest to " + seconds);
+			assertEquals(enclosing(times, seconds), shuffled.getEnclosingPlane(
+				seconds), "enclosing " + seconds);
+		}
+	}
+
+	/** Nearest plane by linear search, the lowest plane index on a tie. */
+	private static int nearest(final double[] times, final double seconds) {
+		int best = -1;
+		for (int plane = 0; plane < times.length; plane++) {
+			if (Double.isNaN(times[plane])) continue;
+			final double distance = Math.abs(times[plane] - seconds);
+			final double bestDistance = best < 0 ? Double.POSITIVE_INFINITY : Math
+				.abs(times[best] - seconds);
+			if (distance < bestDistance || distance == bestDistance &&
+				times[plane] < times[best]) best = plane;
+		}
+		return best;
+	}
+
+	/** Latest plane at or before the time by linear search. */
+	private static int enclosing(final double[] times, final double seconds) {
+		int best = -1;
+		for (int plane = 0; plane < times.length; plane++) {
+			if (Double.isNaN(times[plane]) || times[plane] > seconds) continue;
+			if (best < 0 || times[plane] >= times[best]) best = plane;
+		}
+		return best;
+	}
+}
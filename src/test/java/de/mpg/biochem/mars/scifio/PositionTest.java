@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * SCIFIO adapted Mars Micromanager format and translator.
+ * %%
+ * Copyright (C) 2020 - 2025 Karl Duderstadt
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package de.mpg.biochem.mars.scifio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.mpg.biochem.mars.scifio.MarsMicromanagerFormat.Metadata;
+import de.mpg.biochem.mars.scifio.MarsMicromanagerFormat.Position;
+
+import io.scif.ImageMetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import net.imagej.axis.Axes;
+
+import org.junit.jupiter.api.Test;
+import org.scijava.Context;
+import org.scijava.io.handle.DataHandleService;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Tests how {@link Position} finds the files of its planes.
+ *
+ * @author Karl Duderstadt
+ */
+public class PositionTest {
+
+	@Test
+	public void testFileWithoutBlock() throws IOException {
+		final File dir = Files.createTempDirectory("position").toFile();
+		final Context context = new Context(DataHandleService.class);
+		try {
+			final DataHandleService dataHandleService = context.getService(
+				DataHandleService.class);
+			final Metadata meta = createMetadata(dir, 2, 1, 3);
+			final Position p = meta.getPositions().get(0);
+			// the block of plane 3 is missing, plane 5 has neither block nor file
+			for (int plane = 0; plane < 6; plane++) {
+				if (plane != 5) touch(dir, p.tiffs, plane);
+				if (plane == 3 || plane == 5) continue;
+				final int[] zct = { plane % 2, 0, plane / 2 };
+				p.putFileName(meta.get(0), zct, p.tiffs.get(plane).getName(), true);
+				p.blockIndex.put(zct[0], zct[1], zct[2], plane * 100, 100);
+			}
+			p.buildPlaneFileTable(meta.get(0));
+
+			assertFalse(p.hasPlane(meta, 0, 3));
+			final Location file = p.getExistingLocation(dataHandleService, meta, 0,
+				3);
+			assertEquals("img_channel000_position000_time000000001_z001.tif", file
+				.getName());
+			assertTrue(p.hasPlane(meta, 0, 4));
+			assertFalse(p.hasPlane(meta, 0, 5));
+			assertNull(p.getExistingLocation(dataHandleService, meta, 0, 5));
+		}
+		finally {
+			context.dispose();
+			for (final File file : dir.listFiles())
+				file.delete();
+			dir.delete();
+		}
+	}
+
+	private static Metadata createMetadata(final File dir, final int sizeZ,
+		final int sizeC, final int sizeT)
+	{
+		final Position p = new Position();
+		p.metadataFile = new FileLocation(new File(dir, "metadata.txt"));
+		p.tiffs = GeneratedTIFFList.mv2(p.metadataFile, "img", 0, sizeZ, sizeC)
+			.withFrames(sizeT);
+
+		final Metadata meta = new Metadata();
+		meta.setPositions(Collections.singletonList(p));
+		meta.createImageMetadata(1);
+		meta.populateImageMetadata();
+		final ImageMetadata ms = meta.get(0);
+		ms.setAxisLength(Axes.X, 4);
+		ms.setAxisLength(Axes.Y, 3);
+		ms.setAxisLength(Axes.Z, sizeZ);
+		ms.setAxisLength(Axes.CHANNEL, sizeC);
+		ms.setAxisLength(Axes.TIME, sizeT);
+		return meta;
+	}
+
+	private static void touch(final File dir, final List<Location> tiffs,
+		final int plane) throws IOException
+	{
+		new File(dir, tiffs.get(plane).getName()).createNewFile();
+	}
+}